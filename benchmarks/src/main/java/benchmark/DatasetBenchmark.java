@@ -0,0 +1,63 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.MetricStore;
+import main.DatasetCreator;
+import main.DatasetIndex;
+
+// Scrittura del csv del dataset e del suo indice (DatasetCreator.writeCSVFile), in csv/ come nel programma
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatasetBenchmark {
+
+	@Param({ "20", "100" })
+	private int versions;
+
+	@Param({ "1000", "10000" })
+	private int files;
+
+	private String projectName;
+	private MetricStore metricStore;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+
+		projectName = "BENCHMARK_" + versions + "_" + files;
+		metricStore = SyntheticData.getMetricStore(versions, files);
+		Files.createDirectories(DatasetIndex.getDatasetFile(projectName).getParent());
+	}
+
+	@Benchmark
+	public void writeCSVFile() throws IOException {
+		new DatasetCreator().writeCSVFile(projectName, metricStore, versions);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+
+		Files.deleteIfExists(DatasetIndex.getDatasetFile(projectName));
+		Files.deleteIfExists(DatasetIndex.getIndexFile(projectName));
+	}
+
+}
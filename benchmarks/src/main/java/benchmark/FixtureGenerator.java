@@ -0,0 +1,395 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.PackInserter;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import logic.HttpResponseCache;
+import logic.JiraSearchFetcher;
+import main.LoggerClass;
+import main.MainActivity;
+
+// Genera un progetto sintetico da dare a MainActivity senza accedere alla rete:
+// - una repository git (bare) con "commits" commit lineari, fino a "files" classi java ed un pom.xml per modulo,
+//   in media "churn" file modificati per commit e le classi nuove aggiunte man mano
+// - le risposte di Jira per le versioni ed i ticket di bug fixati, salvate in una cache delle risposte da usare
+//   con -DhttpCacheMode=replay. I messaggi di commit citano i ticket come NOMEPROGETTO-<id>.
+// Tutto è generato con un seed fisso, quindi la stessa configurazione produce sempre la stessa repository.
+public class FixtureGenerator {
+
+	public static final String REPOSITORY_DIRECTORY = "repository.git";
+	public static final String HTTP_CACHE_DIRECTORY = "http-cache";
+	public static final String FIXTURE_PROPERTIES = "fixture.properties";
+
+	private static final String BRANCH = Constants.R_HEADS + Constants.MASTER;
+	private static final LocalDate FIRST_COMMIT_DATE = LocalDate.of(2011, 1, 1);
+	private static final int DAYS_PER_RELEASE = 200;
+	private static final int FILES_PER_PACKAGE = 40;
+	private static final int PACKAGES_PER_MODULE = 40;
+	private static final int INITIAL_FILES_PERCENTAGE = 60;
+	private static final int POM_CHANGE_PERCENTAGE = 20;
+	private static final int AFFECTED_VERSIONS_PERCENTAGE = 60;
+	private static final int MAX_TICKET_AGE_DAYS = 400;
+
+	// Commit scritti in ogni pack: il pack inserter tiene in memoria l'indice degli oggetti fino al flush
+	private static final int COMMITS_PER_PACK = 50_000;
+
+	private static final DateTimeFormatter JIRA_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'+0000'");
+	private static final PersonIdent DEVELOPER = new PersonIdent("Synthetic Developer", "developer@example.org");
+
+	private final String projectName;
+	private final int commits;
+	private final int files;
+	private final int churn;
+	private final int releases;
+	private final int tickets;
+	private final long seed;
+
+	// Revisioni di ogni file (0 = non ancora creato) e di ogni pom.xml dei moduli
+	private int[] fileRevisions;
+	private int[] pomRevisions;
+
+	public FixtureGenerator(String projectName, int commits, int files, int churn, int releases, int tickets, long seed) {
+
+		if (commits < 2 || files < 1 || churn < 1 || releases < 2 || tickets < 0) {
+			throw new IllegalArgumentException("Configurazione del progetto sintetico non valida");
+		}
+		this.projectName = projectName;
+		this.commits = commits;
+		this.files = files;
+		this.churn = churn;
+		this.releases = releases;
+		this.tickets = tickets;
+		this.seed = seed;
+	}
+
+	// Genera repository e risposte di Jira nella cartella, che non deve contenere un'altra fixture
+	public void generate(Path directory) throws IOException, GitAPIException, JSONException {
+
+		Random random = new Random(seed);
+
+		// I ticket vengono decisi prima, perché i commit di fix devono citarli
+		List<JSONObject> issues = new ArrayList<>();
+		Map<Integer, List<Integer>> ticketsByCommit = new HashMap<>();
+		for (int ticketID = 1; ticketID <= tickets; ticketID++) {
+			int fixCommit = 1 + random.nextInt(commits - 1);
+			ticketsByCommit.computeIfAbsent(fixCommit, commit -> new ArrayList<>()).add(ticketID);
+			issues.add(getIssue(random, ticketID, getCommitTime(fixCommit)));
+		}
+
+		writeRepository(directory.resolve(REPOSITORY_DIRECTORY), random, ticketsByCommit);
+		writeJiraResponses(directory.resolve(HTTP_CACHE_DIRECTORY), issues);
+
+		// Scritto per ultimo: se c'è, la fixture è completa
+		Properties properties = new Properties();
+		properties.setProperty("project", projectName);
+		properties.setProperty("commits", String.valueOf(commits));
+		properties.setProperty("files", String.valueOf(files));
+		properties.setProperty("churn", String.valueOf(churn));
+		properties.setProperty("releases", String.valueOf(releases));
+		properties.setProperty("tickets", String.valueOf(tickets));
+		try (Writer writer = Files.newBufferedWriter(directory.resolve(FIXTURE_PROPERTIES), StandardCharsets.UTF_8)) {
+			properties.store(writer, "Progetto sintetico generato da FixtureGenerator");
+		}
+	}
+
+	private void writeRepository(Path repositoryDirectory, Random random, Map<Integer, List<Integer>> ticketsByCommit)
+			throws IOException, GitAPIException {
+
+		LoggerClass.infoLog("Genero {} commit con fino a {} classi in {}", commits, files, repositoryDirectory);
+
+		fileRevisions = new int[files];
+		pomRevisions = new int[(files - 1) / (FILES_PER_PACKAGE * PACKAGES_PER_MODULE) + 1];
+		int existingFiles = 0;
+		TreeNode root = new TreeNode();
+		ObjectId head = null;
+
+		try (Git git = Git.init().setBare(true).setDirectory(repositoryDirectory.toFile()).call()) {
+
+			Repository repository = git.getRepository();
+			PackInserter inserter = ((FileRepository) repository).getObjectDatabase().newPackInserter();
+			try {
+				for (int commit = 0; commit < commits; commit++) {
+
+					// Le classi vengono create man mano: una parte nel primo commit, le altre fino all'ultimo
+					int targetFiles = (int) (files * (INITIAL_FILES_PERCENTAGE + (100L - INITIAL_FILES_PERCENTAGE) * commit / (commits - 1)) / 100);
+					while (existingFiles < Math.max(1, targetFiles)) {
+						updateFile(root, inserter, existingFiles++);
+					}
+
+					if (commit > 0) {
+						// File distinti, altrimenti la revisione intermedia di un file toccato due volte resta orfana
+						int changes = Math.min(existingFiles, 1 + random.nextInt(2 * churn - 1));
+						Set<Integer> changedFiles = new LinkedHashSet<>();
+						while (changedFiles.size() < changes) {
+							changedFiles.add(random.nextInt(existingFiles));
+						}
+						for (int file : changedFiles) {
+							updateFile(root, inserter, file);
+						}
+						if (random.nextInt(100) < POM_CHANGE_PERCENTAGE) {
+							updatePom(root, inserter, random.nextInt(existingFiles) / (FILES_PER_PACKAGE * PACKAGES_PER_MODULE));
+						}
+					}
+
+					head = insertCommit(inserter, root.write(inserter), head, commit, ticketsByCommit.get(commit));
+
+					if ((commit + 1) % COMMITS_PER_PACK == 0) {
+						inserter.flush();
+						LoggerClass.infoLog("Commit generati: {}/{}", commit + 1, commits);
+					}
+				}
+				inserter.flush();
+			} finally {
+				inserter.close();
+			}
+
+			RefUpdate branchUpdate = repository.updateRef(BRANCH);
+			branchUpdate.setNewObjectId(head);
+			branchUpdate.forceUpdate();
+			repository.updateRef(Constants.HEAD).link(BRANCH);
+		}
+	}
+
+	private void updateFile(TreeNode root, ObjectInserter inserter, int file) throws IOException {
+
+		int revision = ++fileRevisions[file];
+		root.put(getPath(file), inserter.insert(Constants.OBJ_BLOB, getJavaContent(file, revision)));
+	}
+
+	private void updatePom(TreeNode root, ObjectInserter inserter, int module) throws IOException {
+
+		int revision = ++pomRevisions[module];
+		String pom = "<project>\n  <artifactId>module" + module + "</artifactId>\n  <version>" + revision + "</version>\n</project>\n";
+		root.put("module" + module + "/pom.xml", inserter.insert(Constants.OBJ_BLOB, pom.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private ObjectId insertCommit(ObjectInserter inserter, ObjectId tree, ObjectId parent, int commit, List<Integer> fixedTickets)
+			throws IOException {
+
+		PersonIdent ident = new PersonIdent(DEVELOPER, getCommitTime(commit).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+				0);
+
+		StringBuilder message = new StringBuilder();
+		if (fixedTickets == null) {
+			message.append("Refactor synthetic classes, change ").append(commit);
+		} else {
+			for (int ticketID : fixedTickets) {
+				message.append(projectName).append('-').append(ticketID).append(": ");
+			}
+			message.append("Fix synthetic bug, change ").append(commit);
+		}
+
+		CommitBuilder commitBuilder = new CommitBuilder();
+		commitBuilder.setTreeId(tree);
+		if (parent != null) {
+			commitBuilder.setParentId(parent);
+		}
+		commitBuilder.setAuthor(ident);
+		commitBuilder.setCommitter(ident);
+		commitBuilder.setMessage(message.toString());
+		return inserter.insert(commitBuilder);
+	}
+
+	// I commit sono distribuiti uniformemente dalla prima data fino a una release dopo l'ultima
+	private LocalDateTime getCommitTime(int commit) {
+
+		long totalSeconds = (releases + 1L) * DAYS_PER_RELEASE * 24 * 3600;
+		return FIRST_COMMIT_DATE.atTime(12, 0).plusSeconds(totalSeconds * commit / commits);
+	}
+
+	private static LocalDate getReleaseDate(int version) {
+		return FIRST_COMMIT_DATE.plusDays((long) version * DAYS_PER_RELEASE);
+	}
+
+	private static String getVersionName(int version) {
+		return "4." + version + ".0";
+	}
+
+	// Prima release dopo la data, come JiraLogic per opening e fixed version (0 se dopo l'ultima)
+	private int getVersionAfter(LocalDate date) {
+
+		for (int version = 1; version <= releases; version++) {
+			if (getReleaseDate(version).isAfter(date)) {
+				return version;
+			}
+		}
+		return 0;
+	}
+
+	private static String getPath(int file) {
+
+		int module = file / (FILES_PER_PACKAGE * PACKAGES_PER_MODULE);
+		int packageIndex = file / FILES_PER_PACKAGE % PACKAGES_PER_MODULE;
+		return "module" + module + "/src/main/java/org/apache/synthetic/package" + packageIndex + "/Class" + file + ".java";
+	}
+
+	// Contenuto della classe alla revisione indicata: ad ogni revisione viene aggiunto un campo e cambia il
+	// valore di circa l'8% dei campi esistenti, così il diff contiene inserimenti e sostituzioni
+	private static byte[] getJavaContent(int file, int revision) {
+
+		int fields = 20 + file % 80 + revision;
+		StringBuilder content = new StringBuilder(fields * 32);
+		content.append("package org.apache.synthetic.package").append(file / FILES_PER_PACKAGE % PACKAGES_PER_MODULE)
+				.append(";\n\npublic class Class").append(file).append(" {\n\n");
+		for (int field = 0; field < fields; field++) {
+			int period = 2 + (field * 31 + file) % 30;
+			content.append("\tint field").append(field).append(" = ").append(revision / period).append(";\n");
+		}
+		content.append("}\n");
+		return content.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	// Ticket di bug fixato dal commit con la data passata. Una parte dei ticket ha le Affected Version,
+	// gli altri richiedono proportion.
+	private JSONObject getIssue(Random random, int ticketID, LocalDateTime fixTime) throws JSONException {
+
+		LocalDateTime resolutionTime = fixTime.plusHours(random.nextInt(72));
+		LocalDateTime creationTime = fixTime.minusDays(random.nextInt(MAX_TICKET_AGE_DAYS));
+		if (creationTime.toLocalDate().isBefore(FIRST_COMMIT_DATE)) {
+			creationTime = FIRST_COMMIT_DATE.atStartOfDay();
+		}
+
+		JSONArray affectedVersions = new JSONArray();
+		int openingVersion = getVersionAfter(creationTime.toLocalDate());
+		int fixedVersion = getVersionAfter(resolutionTime.toLocalDate());
+		if (openingVersion > 0 && random.nextInt(100) < AFFECTED_VERSIONS_PERCENTAGE) {
+			int injectedVersion = Math.max(1, openingVersion - random.nextInt(3));
+			int lastAffectedVersion = fixedVersion > injectedVersion ? fixedVersion - 1 : injectedVersion;
+			for (int version = injectedVersion; version <= lastAffectedVersion; version++) {
+				affectedVersions.put(getVersion(version));
+			}
+		}
+
+		JSONArray fixVersions = new JSONArray();
+		if (fixedVersion > 0) {
+			fixVersions.put(getVersion(fixedVersion));
+		}
+
+		JSONObject fields = new JSONObject();
+		fields.put("versions", affectedVersions);
+		fields.put("fixVersions", fixVersions);
+		fields.put("resolutiondate", resolutionTime.format(JIRA_DATE_TIME));
+		fields.put("created", creationTime.format(JIRA_DATE_TIME));
+
+		JSONObject issue = new JSONObject();
+		issue.put("key", projectName + "-" + ticketID);
+		issue.put("fields", fields);
+		return issue;
+	}
+
+	private static JSONObject getVersion(int version) throws JSONException {
+
+		JSONObject jsonVersion = new JSONObject();
+		jsonVersion.put("name", getVersionName(version));
+		jsonVersion.put("releaseDate", getReleaseDate(version).toString());
+		jsonVersion.put("released", true);
+		return jsonVersion;
+	}
+
+	// Salva le risposte agli stessi url usati da MainActivity: il progetto con le versioni e le pagine della
+	// ricerca dei bug fixati
+	private void writeJiraResponses(Path cacheDirectory, List<JSONObject> issues) throws IOException, JSONException {
+
+		HttpResponseCache cache = new HttpResponseCache(cacheDirectory, HttpResponseCache.Mode.RECORD, 0);
+
+		JSONArray versions = new JSONArray();
+		for (int version = 1; version <= releases; version++) {
+			versions.put(getVersion(version));
+		}
+		// Una versione non ancora rilasciata, senza data, come nei progetti veri
+		versions.put(new JSONObject().put("name", getVersionName(releases + 1)).put("released", false));
+		cache.put(MainActivity.getProjectUrl(projectName),
+				new JSONObject().put("key", projectName).put("versions", versions).toString().getBytes(StandardCharsets.UTF_8));
+
+		String searchUrl = MainActivity.getFixedBugsSearchUrl(projectName);
+		int pageSize = MainActivity.JIRA_PAGE_SIZE;
+		for (int startAt = 0; startAt == 0 || startAt < issues.size(); startAt += pageSize) {
+
+			JSONArray pageIssues = new JSONArray();
+			for (JSONObject issue : issues.subList(startAt, Math.min(startAt + pageSize, issues.size()))) {
+				pageIssues.put(issue);
+			}
+			JSONObject page = new JSONObject().put("startAt", startAt).put("maxResults", pageSize)
+					.put("total", issues.size()).put("issues", pageIssues);
+			cache.put(JiraSearchFetcher.getPageUrl(searchUrl, startAt, pageSize), page.toString().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	// Cartella di un albero git: i figli sono ObjectId (file) o TreeNode (cartelle). L'id dell'albero viene
+	// tenuto finché non cambia qualcosa sotto, così ad ogni commit vengono riscritti solo gli alberi toccati.
+	private static class TreeNode {
+
+		private final Map<String, Object> children = new TreeMap<>();
+		private ObjectId treeId;
+
+		void put(String path, ObjectId blobId) {
+
+			treeId = null;
+			int separator = path.indexOf('/');
+			if (separator < 0) {
+				children.put(path, blobId);
+				return;
+			}
+			TreeNode child = (TreeNode) children.computeIfAbsent(path.substring(0, separator), name -> new TreeNode());
+			child.put(path.substring(separator + 1), blobId);
+		}
+
+		ObjectId write(ObjectInserter inserter) throws IOException {
+
+			if (treeId != null) {
+				return treeId;
+			}
+
+			// Git ordina le cartelle come se il nome finisse con "/"
+			List<String> names = new ArrayList<>(children.keySet());
+			names.sort(Comparator.comparing(name -> children.get(name) instanceof TreeNode ? name + "/" : name));
+
+			TreeFormatter formatter = new TreeFormatter();
+			for (String name : names) {
+				Object child = children.get(name);
+				if (child instanceof TreeNode) {
+					formatter.append(name, FileMode.TREE, ((TreeNode) child).write(inserter));
+				} else {
+					formatter.append(name, FileMode.REGULAR_FILE, (ObjectId) child);
+				}
+			}
+			treeId = inserter.insert(formatter);
+			return treeId;
+		}
+	}
+
+}
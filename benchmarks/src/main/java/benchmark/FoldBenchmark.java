@@ -0,0 +1,98 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.MetricStore;
+import machine_learning.ArffBuilder;
+import machine_learning.DatasetInstances;
+import main.DatasetCreator;
+import main.DatasetIndex;
+
+// Costruzione di un fold a metà del walk forward (training set con metà delle versioni, testing set con la
+// successiva), a partire dal csv scritto in csv/ come nel programma:
+// - index: file .arff con ArffBuilder, leggendo solo le versioni del fold grazie all'indice del dataset
+// - scan: file .arff con ArffBuilder, senza indice, leggendo tutto il csv
+// - memory: Instances costruite in memoria da DatasetInstances
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FoldBenchmark {
+
+	@Param({ "20", "100" })
+	private int versions;
+
+	@Param({ "1000", "10000" })
+	private int files;
+
+	@Param({ "index", "scan", "memory" })
+	private String source;
+
+	private String projectName;
+	private DatasetInstances datasetInstances;
+	private int trainingLimit;
+	private Path trainingFile;
+	private Path testingFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+
+		projectName = "BENCHMARK_FOLD_" + versions + "_" + files;
+		MetricStore metricStore = SyntheticData.getMetricStore(versions, files);
+		datasetInstances = new DatasetInstances(projectName, metricStore, versions);
+
+		trainingLimit = versions / 2;
+		trainingFile = Paths.get(projectName + "_training.arff");
+		testingFile = Paths.get(projectName + "_testing.arff");
+
+		Files.createDirectories(DatasetIndex.getDatasetFile(projectName).getParent());
+		new DatasetCreator().writeCSVFile(projectName, metricStore, versions);
+		if (source.equals("scan")) {
+			Files.delete(DatasetIndex.getIndexFile(projectName));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+
+		Files.deleteIfExists(DatasetIndex.getDatasetFile(projectName));
+		Files.deleteIfExists(DatasetIndex.getIndexFile(projectName));
+		Files.deleteIfExists(trainingFile);
+		Files.deleteIfExists(testingFile);
+	}
+
+	// Ritorna il numero di righe del fold
+	@Benchmark
+	public int buildFold() throws IOException {
+
+		if (source.equals("memory")) {
+			return datasetInstances.getFold(trainingLimit).getTrainingStats().get(0);
+		}
+
+		List<Integer> trainingStats = ArffBuilder.buildTrainingSetWalkForward(projectName, trainingLimit, trainingFile.toString());
+		List<Integer> testingStats = ArffBuilder.buildTestingSetWalkForward(projectName, trainingLimit + 1, testingFile.toString());
+		return trainingStats.get(0) + testingStats.get(0);
+	}
+
+}
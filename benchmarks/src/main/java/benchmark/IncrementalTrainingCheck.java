@@ -0,0 +1,100 @@
+package benchmark;
+
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import logic.MetricStore;
+import machine_learning.ArffFoldSource;
+import machine_learning.DatasetInstances;
+import machine_learning.EvaluationLogic;
+import machine_learning.FoldSource;
+import machine_learning.WalkForward;
+import main.DatasetCreator;
+import main.DatasetIndex;
+import main.LoggerClass;
+
+// Controllo dell'addestramento incrementale (-DincrementalTraining=true) su entrambe le sorgenti dei fold:
+// file .arff costruiti dal csv (ArffFoldSource, come EvaluationLogic.main) e Instances in memoria
+// (DatasetInstances, come MainActivity con -DinMemoryEvaluation=true). Il dataset è sintetico; per ogni
+// sorgente EvaluationLogic deve valutare tutti i fold e scrivere una riga per classificatore e fold.
+//
+// java -cp benchmarks/target/benchmarks.jar benchmark.IncrementalTrainingCheck
+//
+// Termina con exit code 1 se un controllo non passa.
+public class IncrementalTrainingCheck {
+
+	private static final int VERSIONS = 6;
+	private static final int FILES = 300;
+	private static final int CLASSIFIERS = 3;
+	private static final String ARFF_PROJECT = "CHECK_INCREMENTAL_ARFF";
+	private static final String MEMORY_PROJECT = "CHECK_INCREMENTAL_MEMORY";
+
+	private IncrementalTrainingCheck() {
+		throw new IllegalStateException("This should not be called!");
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		// WalkForward legge la proprietà al caricamento della classe, che avviene solo da qui in poi
+		System.setProperty("incrementalTraining", "true");
+		LoggerClass.setupLogger();
+
+		List<String> failures = new ArrayList<>();
+		if (!WalkForward.isIncrementalTraining()) {
+			failures.add("addestramento incrementale non attivo");
+		}
+
+		MetricStore metricStore = SyntheticData.getMetricStore(VERSIONS, FILES);
+		Files.createDirectories(DatasetIndex.getDatasetFile(ARFF_PROJECT).getParent());
+		new DatasetCreator().writeCSVFile(ARFF_PROJECT, metricStore, VERSIONS);
+
+		List<FoldSource> sources = Arrays.asList(new ArffFoldSource(ARFF_PROJECT, VERSIONS),
+				new DatasetInstances(MEMORY_PROJECT, metricStore, VERSIONS));
+		try {
+			for (FoldSource source : sources) {
+				checkSource(source, failures);
+			}
+		} finally {
+			Files.deleteIfExists(DatasetIndex.getDatasetFile(ARFF_PROJECT));
+			Files.deleteIfExists(DatasetIndex.getIndexFile(ARFF_PROJECT));
+			for (FoldSource source : sources) {
+				Files.deleteIfExists(getMetricsFile(source));
+			}
+		}
+
+		for (String failure : failures) {
+			LoggerClass.errorLog("Controllo fallito: {}", failure);
+		}
+		if (!failures.isEmpty()) {
+			System.exit(1);
+		}
+		LoggerClass.infoLog("Addestramento incrementale: tutti i controlli passati");
+	}
+
+	private static void checkSource(FoldSource source, List<String> failures) {
+
+		String sourceName = source.getClass().getSimpleName();
+		try {
+			EvaluationLogic.evaluateProjects(Arrays.asList(source));
+
+			// Intestazione più una riga per classificatore e fold
+			int expectedLines = 1 + CLASSIFIERS * (VERSIONS - 1);
+			int lines = Files.readAllLines(getMetricsFile(source), Charset.defaultCharset()).size();
+			if (lines != expectedLines) {
+				failures.add(sourceName + ": " + lines + " righe di metriche invece di " + expectedLines);
+			}
+		} catch (Exception e) {
+			failures.add(sourceName + ": " + e);
+		}
+	}
+
+	private static Path getMetricsFile(FoldSource source) {
+		return Paths.get("csv", source.getProjectName() + "_metrics.csv");
+	}
+
+}
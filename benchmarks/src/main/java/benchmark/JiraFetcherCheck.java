@@ -0,0 +1,193 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import logic.JiraSearchFetcher;
+import main.LoggerClass;
+
+// Controllo di JiraSearchFetcher contro un finto Jira locale (com.sun.net.httpserver), senza rete né cache
+// delle risposte. Il server limita maxResults, risponde con ritardi casuali e fa fallire la prima richiesta
+// di alcune pagine con 429 (con Retry-After) o 503. Il controllo verifica che:
+// - tutti i ticket arrivino all'handler una volta sola e nell'ordine della ricerca;
+// - solo le pagine fallite vengano richieste una seconda volta;
+// - le richieste in parallelo siano più di una ma non più di quelle concesse.
+//
+// java -cp benchmarks/target/benchmarks.jar benchmark.JiraFetcherCheck
+//
+// Termina con exit code 1 se un controllo non passa.
+public class JiraFetcherCheck {
+
+	private static final String PROJECT_KEY = "STUB";
+	private static final String SEARCH_PATH = "/rest/api/2/search";
+	private static final int TOTAL_ISSUES = 2350;
+	private static final int REQUESTED_PAGE_SIZE = 1000;
+	private static final int SERVER_PAGE_LIMIT = 100;
+	private static final int PARALLELISM = 4;
+	private static final double REQUESTS_PER_SECOND = 1000;
+	private static final int MAX_DELAY_MILLIS = 30;
+
+	// Pagine (startAt) la cui prima richiesta fallisce, con lo stato restituito
+	private static final Map<Integer, Integer> FAILING_PAGES = new HashMap<>();
+
+	static {
+		FAILING_PAGES.put(0, 429);
+		FAILING_PAGES.put(300, 429);
+		FAILING_PAGES.put(1200, 503);
+		FAILING_PAGES.put(2300, 429);
+	}
+
+	// Map<startAt, numero di richieste ricevute>
+	private final Map<Integer, AtomicInteger> requestsByPage = new ConcurrentHashMap<>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+
+	private JiraFetcherCheck() {
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		LoggerClass.setupLogger();
+		List<String> failures = new JiraFetcherCheck().run();
+		for (String failure : failures) {
+			LoggerClass.errorLog("Controllo fallito: {}", failure);
+		}
+		if (!failures.isEmpty()) {
+			System.exit(1);
+		}
+		LoggerClass.infoLog("JiraSearchFetcher: tutti i controlli passati");
+	}
+
+	private List<String> run() throws Exception {
+
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		ExecutorService serverThreads = Executors.newCachedThreadPool();
+		server.setExecutor(serverThreads);
+		server.createContext(SEARCH_PATH, this::handle);
+		server.start();
+
+		List<String> keys = new ArrayList<>();
+		int issueCount;
+		try {
+			String searchUrl = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+					+ server.getAddress().getPort() + SEARCH_PATH + "?jql=project=" + PROJECT_KEY;
+			issueCount = new JiraSearchFetcher(PARALLELISM, REQUESTS_PER_SECOND).fetch(searchUrl, REQUESTED_PAGE_SIZE,
+					issue -> keys.add(issue.getString("key")));
+		} finally {
+			server.stop(0);
+			serverThreads.shutdownNow();
+		}
+
+		List<String> failures = new ArrayList<>();
+		if (issueCount != TOTAL_ISSUES) {
+			failures.add("ticket letti " + issueCount + " invece di " + TOTAL_ISSUES);
+		}
+		for (int i = 0; i < Math.max(keys.size(), TOTAL_ISSUES); i++) {
+			String expected = i < TOTAL_ISSUES ? issueKey(i) : null;
+			String actual = i < keys.size() ? keys.get(i) : null;
+			if (expected == null || !expected.equals(actual)) {
+				failures.add("in posizione " + i + " è arrivato " + actual + " invece di " + expected);
+				break;
+			}
+		}
+		for (int startAt = 0; startAt < TOTAL_ISSUES; startAt += SERVER_PAGE_LIMIT) {
+			AtomicInteger requests = requestsByPage.get(startAt);
+			int expected = FAILING_PAGES.containsKey(startAt) ? 2 : 1;
+			int actual = requests == null ? 0 : requests.get();
+			if (actual != expected) {
+				failures.add("pagina " + startAt + " richiesta " + actual + " volte invece di " + expected);
+			}
+		}
+		if (requestsByPage.size() != (TOTAL_ISSUES + SERVER_PAGE_LIMIT - 1) / SERVER_PAGE_LIMIT) {
+			failures.add("pagine richieste " + requestsByPage.keySet());
+		}
+		if (maxInFlight.get() < 2 || maxInFlight.get() > PARALLELISM) {
+			failures.add("richieste contemporanee " + maxInFlight.get() + ", attese tra 2 e " + PARALLELISM);
+		}
+		return failures;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+
+		maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+		try {
+			Map<String, String> query = parseQuery(exchange.getRequestURI());
+			int startAt = Integer.parseInt(query.get("startAt"));
+			int maxResults = Math.min(Integer.parseInt(query.get("maxResults")), SERVER_PAGE_LIMIT);
+			int attempt = requestsByPage.computeIfAbsent(startAt, page -> new AtomicInteger()).incrementAndGet();
+
+			Thread.sleep(ThreadLocalRandom.current().nextInt(MAX_DELAY_MILLIS + 1));
+
+			Integer failure = FAILING_PAGES.get(startAt);
+			if (failure != null && attempt == 1) {
+				if (failure == 429) {
+					exchange.getResponseHeaders().add("Retry-After", "0");
+				}
+				send(exchange, failure, "{\"errorMessages\":[\"stub\"]}");
+				return;
+			}
+			send(exchange, 200, searchPage(startAt, maxResults));
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			send(exchange, 500, "{}");
+		} finally {
+			inFlight.decrementAndGet();
+		}
+	}
+
+	// Pagina della ricerca come quelle di Jira: "total" e l'array "issues"
+	private static String searchPage(int startAt, int maxResults) {
+
+		StringBuilder page = new StringBuilder("{\"startAt\":").append(startAt).append(",\"maxResults\":").append(maxResults)
+				.append(",\"total\":").append(TOTAL_ISSUES).append(",\"issues\":[");
+		for (int i = startAt; i < Math.min(startAt + maxResults, TOTAL_ISSUES); i++) {
+			if (i > startAt) {
+				page.append(',');
+			}
+			page.append("{\"key\":\"").append(issueKey(i)).append("\",\"fields\":{}}");
+		}
+		return page.append("]}").toString();
+	}
+
+	private static String issueKey(int i) {
+		return PROJECT_KEY + "-" + i;
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+
+		byte[] content = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, content.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(content);
+		}
+	}
+
+	private static Map<String, String> parseQuery(URI uri) {
+
+		Map<String, String> query = new HashMap<>();
+		for (String parameter : uri.getRawQuery().split("&")) {
+			int equals = parameter.indexOf('=');
+			query.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+		}
+		return query;
+	}
+
+}
@@ -0,0 +1,104 @@
+package benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.diff.EditList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Multimap;
+
+import logic.JiraLogic;
+import logic.MetricStore;
+
+// Conteggio delle linee dalle liste di modifiche (countChangedLines) e aggiornamento delle metriche (getMetrics)
+// per ogni file di ogni commit, come in DatasetCreator.analyzeCommit ma senza diff: le liste di modifiche sono
+// sintetiche e generate prima. Ogni invocazione riempie uno store nuovo.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+
+	private static final int VERSIONS = 20;
+	private static final int MAX_FILES_PER_COMMIT = 12;
+	private static final int MAX_EDITS_PER_FILE = 10;
+
+	@Param({ "1000", "10000", "100000" })
+	private int commits;
+
+	@Param({ "1000", "10000" })
+	private int files;
+
+	private Multimap<LocalDate, String> releases;
+	private List<SyntheticCommit> syntheticCommits;
+
+	// Un commit già "diffato": versione, file toccati con le loro modifiche, ticket associati
+	private static class SyntheticCommit {
+
+		private final int version;
+		private final List<String> paths = new ArrayList<>();
+		private final List<EditList> edits = new ArrayList<>();
+		private final List<Integer> tickets;
+
+		SyntheticCommit(int version, List<Integer> tickets) {
+			this.version = version;
+			this.tickets = tickets;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		Random random = new Random(SyntheticData.SEED);
+		releases = SyntheticData.getReleases(VERSIONS);
+
+		syntheticCommits = new ArrayList<>(commits);
+		for (int i = 0; i < commits; i++) {
+			List<Integer> tickets = random.nextInt(3) == 0 ? Collections.singletonList(1 + random.nextInt(3000))
+					: Collections.<Integer>emptyList();
+			SyntheticCommit commit = new SyntheticCommit(1 + i * VERSIONS / commits, tickets);
+
+			int filesChanged = 1 + random.nextInt(MAX_FILES_PER_COMMIT);
+			for (int f = 0; f < filesChanged; f++) {
+				commit.paths.add(SyntheticData.getPath(random.nextInt(files)));
+				commit.edits.add(SyntheticData.getEditList(random, 1 + random.nextInt(MAX_EDITS_PER_FILE)));
+			}
+			syntheticCommits.add(commit);
+		}
+	}
+
+	@Benchmark
+	public MetricStore getMetrics() {
+
+		MetricStore metricStore = new MetricStore();
+		JiraLogic jiraLogic = new JiraLogic(releases, metricStore, null, null);
+
+		for (SyntheticCommit commit : syntheticCommits) {
+			for (int f = 0; f < commit.paths.size(); f++) {
+				int[] linesChanged = JiraLogic.countChangedLines(commit.edits.get(f));
+				jiraLogic.getMetrics(commit.paths.get(f), commit.version, linesChanged[0], linesChanged[1],
+						commit.paths.size(), commit.tickets, VERSIONS + 1);
+			}
+		}
+		return metricStore;
+	}
+
+}
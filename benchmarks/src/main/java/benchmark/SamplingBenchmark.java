@@ -0,0 +1,66 @@
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import machine_learning.DatasetInstances;
+import machine_learning.Fold;
+import machine_learning.HandledException;
+import machine_learning.TechniquesLogic;
+
+// Valutazione di un fold di FinalEvaluation con TechniquesLogic.applySampling: i tre classificatori con
+// le quattro tecniche di sampling. La cache dei modelli è disattivata, altrimenti dalla seconda invocazione
+// verrebbero solo letti i modelli salvati.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-DmodelCacheMaxMB=0")
+public class SamplingBenchmark {
+
+	private static final int VERSIONS = 20;
+
+	@Param({ "1000", "5000" })
+	private int files;
+
+	@Param({ "2", "10" })
+	private int trainingLimit;
+
+	private Fold fold;
+	private double percentageMajorityClass;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+
+		DatasetInstances datasetInstances = new DatasetInstances("BENCHMARK_SAMPLING",
+				SyntheticData.getMetricStore(VERSIONS, files), VERSIONS);
+		fold = datasetInstances.getFold(trainingLimit);
+
+		// Come in FinalEvaluation: percentuale di classi non buggy nel training e nel testing set
+		List<Integer> trainingStats = fold.getTrainingStats();
+		List<Integer> testingStats = fold.getTestingStats();
+		percentageMajorityClass = 1 - ((trainingStats.get(1) + testingStats.get(1))
+				/ (double) (trainingStats.get(0) + testingStats.get(0)));
+	}
+
+	@Benchmark
+	public List<String> applySampling() throws HandledException {
+		// Stesso ordine degli argomenti di FinalEvaluation, che passa il testing set del fold come training
+		return TechniquesLogic.applySampling(fold.getTestingSet(), fold.getTrainingSet(), percentageMajorityClass, "False");
+	}
+
+}
@@ -0,0 +1,238 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import main.DatasetIndex;
+import main.LoggerClass;
+import main.MainActivity;
+
+// Esegue tutta la pipeline di MainActivity su progetti sintetici (FixtureGenerator) grandi 10, 100 e 1000
+// volte BookKeeper, e riporta commit/s, righe del dataset/s e picco di heap. Ogni scala gira in una JVM
+// separata, così il picco di heap non dipende dalle scale precedenti e un OutOfMemoryError ferma solo
+// quella scala.
+//
+// java -cp benchmarks/target/benchmarks.jar benchmark.ScaleDriver
+//
+// -Dscales=10,100,1000       fattori rispetto a BookKeeper
+// -DfixtureDirectory=...     cartella delle fixture generate (default "fixtures"), riusate se già complete
+// -DchildHeap=...            -Xmx delle JVM che eseguono la pipeline (es. 8g)
+// -DbaseCommits, -DbaseFiles, -DbaseReleases, -DbaseTickets, -Dchurn   dimensioni della scala 1
+// Le proprietà della pipeline (inMemoryEvaluation, commitWorkers, ...) vengono passate alle JVM figlie.
+public class ScaleDriver {
+
+	private static final String PROJECT_NAME = "SYNTH";
+	private static final String RUN_ARGUMENT = "--run";
+	private static final String RESULT_PROPERTIES = "result.properties";
+
+	// Dimensioni di BookKeeper: circa 14 release su Jira, 1800 commit, 800 file e 450 ticket di bug fixati.
+	// Le release non crescono con la scala: crescono i commit per release ed i file.
+	private static final int BASE_COMMITS = Integer.getInteger("baseCommits", 1800);
+	private static final int BASE_FILES = Integer.getInteger("baseFiles", 800);
+	private static final int BASE_TICKETS = Integer.getInteger("baseTickets", 450);
+	private static final int RELEASES = Integer.getInteger("baseReleases", 14);
+	private static final int CHURN = Integer.getInteger("churn", 4);
+
+	private static final String SCALES = System.getProperty("scales", "10,100,1000");
+	private static final Path FIXTURE_DIRECTORY = Paths.get(System.getProperty("fixtureDirectory", "fixtures"));
+	private static final String CHILD_HEAP = System.getProperty("childHeap");
+
+	// Proprietà della pipeline passate così come sono alle JVM figlie
+	private static final String[] FORWARDED_PROPERTIES = { "inMemoryEvaluation", "commitWorkers", "writeCsv", "proportion",
+			"foldWorkers", "gridWorkers", "incrementalTraining", "modelCache", "modelCacheMaxMB" };
+
+	// Intervallo di campionamento della heap usata
+	private static final long HEAP_SAMPLE_MILLIS = 50;
+
+	private ScaleDriver() {
+		throw new IllegalStateException("This should not be called!");
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		if (args.length == 2 && args[0].equals(RUN_ARGUMENT)) {
+			runPipeline(Paths.get(args[1]));
+			return;
+		}
+
+		LoggerClass.setupLogger();
+		List<String> report = new ArrayList<>();
+
+		for (String scaleValue : SCALES.split(",")) {
+
+			int scale = Integer.parseInt(scaleValue.trim());
+			Path fixture = FIXTURE_DIRECTORY.resolve(PROJECT_NAME + "_" + scale + "x");
+			generateIfMissing(fixture, scale);
+
+			LoggerClass.infoLog("Eseguo la pipeline sulla scala {}x: {}", scale, fixture);
+			int exitCode = runChild(fixture);
+			Path resultFile = fixture.resolve(RESULT_PROPERTIES);
+
+			if (exitCode != 0 || !Files.exists(resultFile)) {
+				// Il limite della scala: tipicamente heap esaurita con -DchildHeap
+				report.add(String.format("%5dx  fallita (exit code %d): limite di scala raggiunto", scale, exitCode));
+				continue;
+			}
+
+			Properties result = readProperties(resultFile);
+			double seconds = Long.parseLong(result.getProperty("millis")) / 1000.0;
+			long commits = Long.parseLong(result.getProperty("commits"));
+			long rows = Long.parseLong(result.getProperty("rows"));
+			long peakHeap = Long.parseLong(result.getProperty("peakHeap"));
+			report.add(String.format("%5dx  %9d commit  %10d righe  %8.1f s  %10.1f commit/s  %10.1f righe/s  picco heap %6d MB",
+					scale, commits, rows, seconds, commits / seconds, rows / seconds, peakHeap / (1024 * 1024)));
+		}
+
+		for (String line : report) {
+			LoggerClass.infoLog(line);
+		}
+	}
+
+	// Genera la fixture della scala, se non c'è già una generazione completa
+	private static void generateIfMissing(Path fixture, int scale) throws Exception {
+
+		if (Files.exists(fixture.resolve(FixtureGenerator.FIXTURE_PROPERTIES))) {
+			LoggerClass.infoLog("Riuso la fixture {}", fixture);
+			return;
+		}
+
+		// Resti di una generazione interrotta
+		deleteDirectory(fixture);
+		Files.createDirectories(fixture);
+
+		long start = System.nanoTime();
+		new FixtureGenerator(PROJECT_NAME, BASE_COMMITS * scale, BASE_FILES * scale, CHURN, RELEASES, BASE_TICKETS * scale,
+				SyntheticData.SEED).generate(fixture);
+		LoggerClass.infoLog("Fixture {} generata in {} s", fixture, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+	}
+
+	// Esegue la pipeline sulla fixture in una nuova JVM, con lo stesso classpath, e ne ritorna l'exit code
+	private static int runChild(Path fixture) throws IOException, InterruptedException {
+
+		// Ogni esecuzione riparte da zero: niente stato dei run precedenti né csv vecchi
+		Path stateDirectory = fixture.resolve("state");
+		deleteDirectory(stateDirectory);
+		deleteDirectory(fixture.resolve(DatasetIndex.getDatasetFile(PROJECT_NAME).getParent()));
+		Files.deleteIfExists(fixture.resolve(RESULT_PROPERTIES));
+
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		if (CHILD_HEAP != null) {
+			command.add("-Xmx" + CHILD_HEAP);
+		}
+		command.add("-Dprojects=" + PROJECT_NAME);
+		command.add("-Drepository." + PROJECT_NAME + "=" + fixture.resolve(FixtureGenerator.REPOSITORY_DIRECTORY).toAbsolutePath());
+		command.add("-DhttpCache=" + fixture.resolve(FixtureGenerator.HTTP_CACHE_DIRECTORY).toAbsolutePath());
+		command.add("-DhttpCacheMode=replay");
+		command.add("-DdatasetState=" + stateDirectory.toAbsolutePath());
+		for (String property : FORWARDED_PROPERTIES) {
+			String value = System.getProperty(property);
+			if (value != null) {
+				command.add("-D" + property + "=" + value);
+			}
+		}
+		command.add("-cp");
+		command.add(getAbsoluteClassPath());
+		command.add(ScaleDriver.class.getName());
+		command.add(RUN_ARGUMENT);
+		command.add(fixture.toAbsolutePath().toString());
+
+		// La JVM figlia lavora nella cartella della fixture: csv, .arff e cache dei modelli restano separati per scala
+		return new ProcessBuilder(command).directory(fixture.toFile()).inheritIO().start().waitFor();
+	}
+
+	// Il classpath di questa JVM con percorsi assoluti, perché la JVM figlia ha un'altra cartella di lavoro
+	private static String getAbsoluteClassPath() {
+
+		List<String> entries = new ArrayList<>();
+		for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			entries.add(Paths.get(entry).toAbsolutePath().toString());
+		}
+		return String.join(File.pathSeparator, entries);
+	}
+
+	// Eseguito nella JVM figlia: la pipeline completa, campionando la heap usata, ed il risultato in result.properties
+	private static void runPipeline(Path fixture) throws Exception {
+
+		Files.createDirectories(DatasetIndex.getDatasetFile(PROJECT_NAME).getParent());
+
+		Properties fixtureProperties = readProperties(fixture.resolve(FixtureGenerator.FIXTURE_PROPERTIES));
+		String projectName = fixtureProperties.getProperty("project");
+
+		AtomicLong peakHeap = new AtomicLong();
+		Thread heapSampler = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				peakHeap.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+				try {
+					Thread.sleep(HEAP_SAMPLE_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "heap-sampler");
+		heapSampler.setDaemon(true);
+		heapSampler.start();
+
+		long start = System.nanoTime();
+		MainActivity.main(new String[0]);
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		heapSampler.interrupt();
+		heapSampler.join();
+		peakHeap.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+
+		// Le righe del dataset dall'indice del csv (0 con -DwriteCsv=false)
+		long rows = 0;
+		DatasetIndex index = DatasetIndex.loadFor(projectName);
+		if (index != null) {
+			for (DatasetIndex.VersionRange range : index.getRanges()) {
+				rows += range.getRows();
+			}
+		}
+
+		Properties result = new Properties();
+		result.setProperty("millis", String.valueOf(millis));
+		result.setProperty("commits", fixtureProperties.getProperty("commits"));
+		result.setProperty("rows", String.valueOf(rows));
+		result.setProperty("peakHeap", String.valueOf(peakHeap.get()));
+		try (Writer writer = Files.newBufferedWriter(fixture.resolve(RESULT_PROPERTIES), StandardCharsets.UTF_8)) {
+			result.store(writer, null);
+		}
+	}
+
+	private static Properties readProperties(Path file) throws IOException {
+
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		return properties;
+	}
+
+	private static void deleteDirectory(Path directory) throws IOException {
+
+		if (!Files.exists(directory)) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+package benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+
+import com.google.common.collect.Multimap;
+import com.google.common.collect.MultimapBuilder;
+
+import logic.MetricStore;
+
+// Dati sintetici per i benchmark, generati con un seed fisso così ogni run misura gli stessi dati.
+// Le proporzioni (file per package, revisioni per versione, classi buggy) ricordano quelle di OPENJPA.
+public class SyntheticData {
+
+	public static final String PROJECT_NAME = "OPENJPA";
+	public static final long SEED = 42;
+
+	private static final LocalDate FIRST_RELEASE = LocalDate.of(2006, 8, 1);
+	private static final int DAYS_BETWEEN_RELEASES = 90;
+	private static final int FILES_PER_PACKAGE = 40;
+
+	private SyntheticData() {
+		throw new IllegalStateException("This should not be called!");
+	}
+
+	// Multimap<data della release, nome release, indice versione>, come quella di MainActivity.getVersionAndReleaseDate
+	public static Multimap<LocalDate, String> getReleases(int versions) {
+
+		Multimap<LocalDate, String> releases = MultimapBuilder.treeKeys().linkedListValues().build();
+		for (int version = 1; version <= versions; version++) {
+			LocalDate releaseDate = getReleaseDate(version);
+			releases.put(releaseDate, "1." + version + ".0");
+			releases.put(releaseDate, String.valueOf(version));
+		}
+		return releases;
+	}
+
+	public static LocalDate getReleaseDate(int version) {
+		return FIRST_RELEASE.plusDays((long) (version - 1) * DAYS_BETWEEN_RELEASES);
+	}
+
+	// Data di commit casuale tra la prima e l'ultima release, e un po' oltre
+	public static LocalDate getCommitDate(Random random, int versions) {
+		return FIRST_RELEASE.plusDays(random.nextInt((versions + 1) * DAYS_BETWEEN_RELEASES));
+	}
+
+	public static String getPath(int file) {
+		return "openjpa-kernel/src/main/java/org/apache/openjpa/package" + (file / FILES_PER_PACKAGE) + "/Class" + file + ".java";
+	}
+
+	// Store con tutti i file presenti in ogni versione, 0-3 revisioni per file e versione, ~15% di classi buggy
+	public static MetricStore getMetricStore(int versions, int files) {
+
+		Random random = new Random(SEED);
+		MetricStore metricStore = new MetricStore();
+
+		for (int version = 1; version <= versions; version++) {
+			for (int file = 0; file < files; file++) {
+				int fileId = metricStore.internPath(getPath(file));
+				metricStore.putEmptyRecord(version, fileId);
+
+				int revisions = random.nextInt(4);
+				for (int revision = 0; revision < revisions; revision++) {
+					int linesAdded = random.nextInt(200);
+					metricStore.addRevision(version, fileId, linesAdded + random.nextInt(100), linesAdded,
+							1 + random.nextInt(30), random.nextInt(4) == 0 ? 1 : 0);
+				}
+				if (random.nextInt(100) < 15) {
+					metricStore.setBuggy(version, fileId);
+				}
+			}
+		}
+		return metricStore;
+	}
+
+	// Lista di modifiche di un file come quella prodotta dal diff: inserimenti, cancellazioni e sostituzioni
+	public static EditList getEditList(Random random, int edits) {
+
+		EditList editList = new EditList();
+		int line = 0;
+		for (int i = 0; i < edits; i++) {
+			line += random.nextInt(50);
+			int removed = random.nextInt(3) == 0 ? 0 : random.nextInt(20);
+			int added = removed == 0 ? 1 + random.nextInt(20) : random.nextInt(20);
+			editList.add(new Edit(line, line + removed, line, line + added));
+			line += removed;
+		}
+		return editList;
+	}
+
+	// ID dei ticket di bug fixati, con ripetizioni come nella lista costruita da MainActivity
+	public static List<Integer> getTicketsList(Random random, int tickets, int maxTicketId) {
+
+		List<Integer> ticketsList = new ArrayList<>();
+		for (int i = 0; i < tickets; i++) {
+			ticketsList.add(1 + random.nextInt(maxTicketId));
+		}
+		return ticketsList;
+	}
+
+	// Map<ticketID, (IV, FV)> per ~3/4 dei ticket
+	public static Map<Integer, List<Integer>> getTicketBuggyIndex(Random random, List<Integer> ticketsList) {
+
+		Map<Integer, List<Integer>> ticketBuggyIndex = new HashMap<>();
+		for (Integer ticketID : ticketsList) {
+			if (random.nextInt(4) != 0) {
+				List<Integer> ivFv = new ArrayList<>();
+				int iv = 1 + random.nextInt(15);
+				ivFv.add(iv);
+				ivFv.add(iv + 1 + random.nextInt(3));
+				ticketBuggyIndex.put(ticketID, ivFv);
+			}
+		}
+		return ticketBuggyIndex;
+	}
+
+	// Messaggio con 0-3 chiavi di ticket, in maiuscolo o minuscolo, più qualche token che non deve fare match
+	public static String getCommitMessage(Random random, int maxTicketId) {
+
+		StringBuilder message = new StringBuilder();
+		int keys = random.nextInt(4);
+		for (int k = 0; k < keys; k++) {
+			String key = random.nextBoolean() ? PROJECT_NAME : PROJECT_NAME.toLowerCase();
+			message.append(key).append('-').append(1 + random.nextInt(maxTicketId)).append(k % 2 == 0 ? ": " : ", ");
+		}
+		message.append("Fix handling of the enhanced classes in the broker factory, see ").append(PROJECT_NAME)
+				.append('-').append(random.nextInt(maxTicketId)).append(random.nextInt(10)).append("x and revision ")
+				.append(random.nextInt(1_000_000)).append(".\n\ngit-svn-id: https://svn.apache.org/repos/asf/openjpa/trunk@")
+				.append(random.nextInt(1_000_000));
+		return message.toString();
+	}
+
+}
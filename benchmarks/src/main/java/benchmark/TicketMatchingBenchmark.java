@@ -0,0 +1,128 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.JiraLogic;
+
+// Ricerca dei ticket nei messaggi di commit (getTicketMessageCommitBugFix e getTicketMessageCommitBuggy) su tutti
+// i commit, confrontata con l'implementazione precedente che compilava una regex per ogni ticket e ogni commit.
+// Le dimensioni di default sono paragonabili alla storia di OPENJPA: ~5000 commit, ~2000 ticket di bug fixati.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TicketMatchingBenchmark {
+
+	private static final String PROJECT_NAME = SyntheticData.PROJECT_NAME;
+
+	@Param({ "500", "5000", "50000" })
+	private int commits;
+
+	@Param({ "200", "2000" })
+	private int tickets;
+
+	private List<Integer> ticketsList;
+	private Map<Integer, List<Integer>> ticketBuggyIndex;
+	private List<String> commitMessages;
+	private JiraLogic jiraLogic;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		Random random = new Random(SyntheticData.SEED);
+		int maxTicketId = tickets * 3 / 2;
+
+		ticketsList = SyntheticData.getTicketsList(random, tickets, maxTicketId);
+		ticketBuggyIndex = SyntheticData.getTicketBuggyIndex(random, ticketsList);
+
+		commitMessages = new ArrayList<>();
+		for (int i = 0; i < commits; i++) {
+			commitMessages.add(SyntheticData.getCommitMessage(random, maxTicketId));
+		}
+
+		jiraLogic = new JiraLogic(SyntheticData.getReleases(20), null, ticketBuggyIndex, ticketsList);
+		jiraLogic.prepareTicketMatching(PROJECT_NAME);
+
+		// Verifico prima che le due implementazioni diano lo stesso risultato
+		for (String message : commitMessages) {
+			if (!legacyBugFix(message, ticketsList).equals(jiraLogic.getTicketMessageCommitBugFix(message, PROJECT_NAME))
+					|| !legacyBuggy(message, ticketBuggyIndex)
+							.equals(jiraLogic.getTicketMessageCommitBuggy(message, PROJECT_NAME))) {
+				throw new IllegalStateException("Risultati diversi per il messaggio: " + message);
+			}
+		}
+	}
+
+	@Benchmark
+	public int ticketExtractor() {
+
+		int matches = 0;
+		for (String message : commitMessages) {
+			matches += jiraLogic.getTicketMessageCommitBugFix(message, PROJECT_NAME).size();
+			matches += jiraLogic.getTicketMessageCommitBuggy(message, PROJECT_NAME).size();
+		}
+		return matches;
+	}
+
+	@Benchmark
+	public int legacyRegexPerTicket() {
+
+		int matches = 0;
+		for (String message : commitMessages) {
+			matches += legacyBugFix(message, ticketsList).size();
+			matches += legacyBuggy(message, ticketBuggyIndex).size();
+		}
+		return matches;
+	}
+
+	// Implementazione precedente: una regex compilata per ogni ticket e per ogni commit
+	private static List<Integer> legacyBugFix(String commitMessage, List<Integer> ticketsList) {
+
+		List<Integer> outcomes = new ArrayList<>();
+		for (Integer entry : ticketsList) {
+			Pattern pattern = Pattern.compile("\\b" + PROJECT_NAME + "-" + entry + "\\b", Pattern.CASE_INSENSITIVE);
+			Matcher matcher = pattern.matcher(commitMessage);
+			if (matcher.find() && !outcomes.contains(entry)) {
+				outcomes.add(entry);
+			}
+		}
+		return outcomes;
+	}
+
+	private static List<Integer> legacyBuggy(String commitMessage, Map<Integer, List<Integer>> ticketBuggyIndex) {
+
+		List<Integer> outcomes = new ArrayList<>();
+		for (Map.Entry<Integer, List<Integer>> entry : ticketBuggyIndex.entrySet()) {
+			Pattern pattern = Pattern.compile("\\b" + PROJECT_NAME + "-" + entry.getKey() + "\\b", Pattern.CASE_INSENSITIVE);
+			Matcher matcher = pattern.matcher(commitMessage);
+			if (matcher.find() && !outcomes.contains(entry.getKey())) {
+				outcomes.add(entry.getValue().get(0));
+				outcomes.add(entry.getValue().get(1));
+				outcomes.add(entry.getKey());
+			}
+		}
+		return outcomes;
+	}
+
+}
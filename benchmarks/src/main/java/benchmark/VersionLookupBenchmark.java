@@ -0,0 +1,88 @@
+package benchmark;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.JiraLogic;
+import logic.ProportionEstimator;
+
+// Ricerca della versione di un commit (getCommitAppartainingVersionIndex) e stima di proportion dai ticket
+// precedenti (getProportionPreviousTicket), chiamate una volta per commit e una per ticket senza Affected Version
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionLookupBenchmark {
+
+	// Numero di ricerche per invocazione del benchmark
+	private static final int LOOKUPS = 10_000;
+
+	@Param({ "20", "200", "2000" })
+	private int versions;
+
+	@Param({ "1000", "10000", "100000" })
+	private int tickets;
+
+	private JiraLogic jiraLogic;
+	private LocalDate[] commitDates;
+	private int[] ticketIds;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		Random random = new Random(SyntheticData.SEED);
+
+		jiraLogic = new JiraLogic(SyntheticData.getReleases(versions), null, null, null);
+
+		// Proportion di ticket con Affected Version valide, come quelli calcolati da getBuggyVersionJiraAVList
+		ProportionEstimator proportionEstimator = ProportionEstimator.increment();
+		for (int i = 0; i < tickets; i++) {
+			proportionEstimator.addTicket(1 + random.nextInt(tickets * 2), random.nextDouble() * 3);
+		}
+		jiraLogic.setProportionEstimator(proportionEstimator);
+
+		commitDates = new LocalDate[LOOKUPS];
+		ticketIds = new int[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			commitDates[i] = SyntheticData.getCommitDate(random, versions);
+			ticketIds[i] = 1 + random.nextInt(tickets * 2);
+		}
+	}
+
+	@Benchmark
+	public int commitAppartainingVersionIndex() {
+
+		int versionSum = 0;
+		for (LocalDate commitDate : commitDates) {
+			versionSum += jiraLogic.getCommitAppartainingVersionIndex(commitDate);
+		}
+		return versionSum;
+	}
+
+	@Benchmark
+	public double proportionPreviousTicket() {
+
+		double proportionSum = 0;
+		for (int ticketID : ticketIds) {
+			proportionSum += jiraLogic.getProportionPreviousTicket(ticketID);
+		}
+		return proportionSum;
+	}
+
+}
@@ -0,0 +1,187 @@
+package logic;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Cache su disco delle risposte HTTP (le chiamate REST a Jira), per non ripetere le richieste ad ogni run.
+// Il contenuto di ogni risposta è salvato una sola volta in objects/<sha256 del contenuto>, mentre in
+// urls/<sha256 dell'url> c'è il riferimento al contenuto, la data del download e l'url stesso.
+// Salvando una cartella di cache registrata con RECORD si può rieseguire lo stesso run in REPLAY, senza rete.
+public class HttpResponseCache {
+
+	public enum Mode {
+		// Uso la risposta in cache se è più recente del TTL, altrimenti la scarico e la salvo
+		CACHE,
+		// Scarico sempre e salvo tutte le risposte, per poterle poi rieseguire con REPLAY
+		RECORD,
+		// Uso solo le risposte in cache, qualunque sia la loro età: non accedo mai alla rete
+		REPLAY,
+		// Nessuna cache, come se non ci fosse
+		OFF
+	}
+
+	// Scarica il contenuto di un url
+	public interface Downloader {
+		byte[] download(String url) throws IOException;
+	}
+
+	// Contenuto di una risposta e momento in cui è stata chiesta al server, anche se viene dalla cache
+	public static final class Response {
+
+		private final byte[] content;
+		private final long fetchedAt;
+
+		Response(byte[] content, long fetchedAt) {
+			this.content = content;
+			this.fetchedAt = fetchedAt;
+		}
+
+		public byte[] getContent() {
+			return content;
+		}
+
+		public long getFetchedAt() {
+			return fetchedAt;
+		}
+	}
+
+	private static final String OBJECTS_DIRECTORY = "objects";
+	private static final String URLS_DIRECTORY = "urls";
+
+	private final Path cacheDirectory;
+	private final Mode mode;
+	private final long ttlMillis;
+
+	public HttpResponseCache(Path cacheDirectory, Mode mode, long ttlMillis) {
+
+		this.cacheDirectory = cacheDirectory;
+		this.mode = mode;
+		this.ttlMillis = ttlMillis;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	// Ritorna il contenuto della risposta per l'url, dalla cache o scaricandolo con il downloader a seconda della modalità
+	public byte[] get(String url, Downloader downloader) throws IOException {
+		return getResponse(url, downloader).getContent();
+	}
+
+	// Come get, ma con il momento in cui la risposta è stata chiesta al server: chi sincronizza dati aggiornati
+	// da una certa data deve partire da lì, non dal momento in cui ha letto la cache
+	public Response getResponse(String url, Downloader downloader) throws IOException {
+
+		if (mode == Mode.OFF) {
+			return download(url, downloader);
+		}
+
+		Path urlFile = cacheDirectory.resolve(URLS_DIRECTORY).resolve(sha256(url.getBytes(StandardCharsets.UTF_8)));
+
+		if (mode != Mode.RECORD) {
+			Response cached = readCached(urlFile);
+			if (cached != null) {
+				return cached;
+			}
+			if (mode == Mode.REPLAY) {
+				throw new IOException("Risposta non presente nella cache " + cacheDirectory + " e modalità replay attiva: " + url);
+			}
+		}
+
+		Response response = download(url, downloader);
+		store(urlFile, url, response.getContent(), response.getFetchedAt());
+		return response;
+	}
+
+	// Scarica l'url, datando la risposta all'inizio della richiesta
+	static Response download(String url, Downloader downloader) throws IOException {
+
+		long requestedAt = System.currentTimeMillis();
+		return new Response(downloader.download(url), requestedAt);
+	}
+
+	// Salva la risposta per l'url come se fosse stata scaricata, ad esempio per preparare una cache
+	// da usare in REPLAY con dati sintetici
+	public void put(String url, byte[] content) throws IOException {
+		store(cacheDirectory.resolve(URLS_DIRECTORY).resolve(sha256(url.getBytes(StandardCharsets.UTF_8))), url, content,
+				System.currentTimeMillis());
+	}
+
+	// Contenuto in cache per l'url, o null se non c'è, è scaduto (tranne in REPLAY) o è incompleto
+	private Response readCached(Path urlFile) throws IOException {
+
+		if (!Files.exists(urlFile)) {
+			return null;
+		}
+
+		// Righe del file dell'url: sha256 del contenuto, data del download in millisecondi, url
+		List<String> lines = Files.readAllLines(urlFile, StandardCharsets.UTF_8);
+		if (lines.size() < 2) {
+			return null;
+		}
+		long fetchedAt = Long.parseLong(lines.get(1));
+		if (mode == Mode.CACHE && System.currentTimeMillis() - fetchedAt > ttlMillis) {
+			return null;
+		}
+
+		Path objectFile = cacheDirectory.resolve(OBJECTS_DIRECTORY).resolve(lines.get(0));
+		if (!Files.exists(objectFile)) {
+			return null;
+		}
+		return new Response(Files.readAllBytes(objectFile), fetchedAt);
+	}
+
+	// Salvo prima il contenuto e poi il riferimento, entrambi tramite un file temporaneo,
+	// così un run interrotto non lascia mai un riferimento ad un contenuto a metà
+	private void store(Path urlFile, String url, byte[] content, long fetchedAt) throws IOException {
+
+		String contentHash = sha256(content);
+		Path objectFile = cacheDirectory.resolve(OBJECTS_DIRECTORY).resolve(contentHash);
+		if (!Files.exists(objectFile)) {
+			writeAtomically(objectFile, content);
+		}
+
+		String reference = contentHash + "\n" + fetchedAt + "\n" + url + "\n";
+		writeAtomically(urlFile, reference.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void writeAtomically(Path file, byte[] content) throws IOException {
+
+		Files.createDirectories(file.getParent());
+		Path temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		Files.write(temporaryFile, content);
+		Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static String sha256(byte[] bytes) {
+
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 non disponibile", e);
+		}
+	}
+
+	// Cache nella cartella indicata con -DhttpCache (default "http-cache"), modalità -DhttpCacheMode=
+	// cache | record | replay | off (default cache) e validità delle risposte -DhttpCacheTtlHours (default 24)
+	public static HttpResponseCache fromSystemProperties() {
+
+		return new HttpResponseCache(Paths.get(System.getProperty("httpCache", "http-cache")),
+				Mode.valueOf(System.getProperty("httpCacheMode", "cache").toUpperCase()),
+				TimeUnit.HOURS.toMillis(Long.getLong("httpCacheTtlHours", 24)));
+	}
+
+}
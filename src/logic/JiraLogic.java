@@ -3,13 +3,11 @@ package logic;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import org.apache.commons.collections4.map.MultiKeyMap;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.diff.Edit;
@@ -25,79 +23,122 @@ import main.LoggerClass;
 
 public class JiraLogic {
 
-	// Multimap<data della release, nome versione, indice versione>
-	private Multimap<LocalDate, String> versionListWithReleaseDateAndIndex;
+	// Date, nomi ed indici delle release, costruita una volta per progetto
+	private ReleaseTimeline releaseTimeline;
 
-	// Map<ticketID, (Opening Version, Fixed Version)>
-	private Multimap<Integer, Double> proportionTickets = MultimapBuilder.treeKeys().linkedListValues().build();
+	// Valori di proportion dei ticket con AV valide, ordinati per ticketID
+	private ProportionEstimator proportionEstimator = ProportionEstimator.increment();
 
 	// Map<ticketID, (OV, FV)>
 	private Multimap<Integer, Integer> ticketNoAVList = MultimapBuilder.treeKeys().linkedListValues().build();
 
-	// MultiKeyMap<Versione del file, path del file, lista delle metriche>
-	@SuppressWarnings("rawtypes")
-	private MultiKeyMap mapToBuildDataset;
+	// Metriche di ogni coppia (versione del file, path del file)
+	private MetricStore metricStore;
+
+	// Metriche del dataset condivise, consultate in sola lettura quando questa istanza scrive su metriche parziali
+	private MetricStore baseDataset;
 
 	private List<Integer> ticketsList;
 
 	// Map<ticketID, (IV, FV)>
 	private Map<Integer, List<Integer>> ticketBuggyIndex;
 
-	private static final String RELEASE_DATE = "releaseDate";
-	private static final int METRICS_NUMBER = 10;
+	// Estrattore dei token "NomeProgetto-IssueID" dai messaggi di commit, creato una volta per progetto
+	private TicketKeyExtractor ticketKeyExtractor;
+
+	// Map<ticketID, posizione> per ticketsList e ticketBuggyIndex, usate per mantenere l'ordine dei risultati
+	private Map<Integer, Integer> ticketsListRank;
+	private int ticketsListRankSize;
+	private Map<Integer, Integer> ticketBuggyRank;
+	private int ticketBuggyRankSize;
 
-	@SuppressWarnings("rawtypes")
-	public JiraLogic(Multimap<LocalDate, String> versionListWithReleaseDateAndIndex, MultiKeyMap fileMapDataset,
+	// Multimap<data della release, nome versione, indice versione>, come data da MainActivity.getVersionAndReleaseDate
+	public JiraLogic(Multimap<LocalDate, String> versionListWithReleaseDateAndIndex, MetricStore metricStore,
 			Map<Integer, List<Integer>> ticketBuggyIndex, List<Integer> ticketList) {
 
-		this.versionListWithReleaseDateAndIndex = versionListWithReleaseDateAndIndex;
-		this.mapToBuildDataset = fileMapDataset;
+		this(new ReleaseTimeline(versionListWithReleaseDateAndIndex), metricStore, ticketBuggyIndex, ticketList);
+	}
+
+	public JiraLogic(ReleaseTimeline releaseTimeline, MetricStore metricStore,
+			Map<Integer, List<Integer>> ticketBuggyIndex, List<Integer> ticketList) {
+
+		this.releaseTimeline = releaseTimeline;
+		this.metricStore = metricStore;
 		this.ticketBuggyIndex = ticketBuggyIndex;
 		this.ticketsList = ticketList;
 	}
 
-	// Metto un record vuoto per le metriche nella mappa (indice release, nome del file, metriche con valori 0)
+	// Ritorna una copia che condivide versioni e ticket con questa istanza, ma che scrive le metriche
+	// nello store parziale passato. Lo store del dataset corrente viene solo letto, per sapere se un
+	// record esiste già. Usata dai worker che analizzano i commit in parallelo.
+	public JiraLogic newPartialView(MetricStore partialDataset) {
+
+		JiraLogic partialView = new JiraLogic(releaseTimeline, partialDataset, ticketBuggyIndex,
+				ticketsList);
+		partialView.baseDataset = metricStore;
+		partialView.ticketKeyExtractor = ticketKeyExtractor;
+		partialView.ticketsListRank = ticketsListRank;
+		partialView.ticketsListRankSize = ticketsListRankSize;
+		partialView.ticketBuggyRank = ticketBuggyRank;
+		partialView.ticketBuggyRankSize = ticketBuggyRankSize;
+		return partialView;
+	}
 
-	@SuppressWarnings("unchecked")
-	public void putEmptyRecord(int releaseIndex, String filename) {
-	
-		if (!mapToBuildDataset.containsKey(releaseIndex, filename)) {
+	public ReleaseTimeline getReleaseTimeline() {
+		return releaseTimeline;
+	}
 
-			ArrayList<Integer> emptyArrayList = new ArrayList<>();
+	// Imposta la strategia con cui stimare proportion. Va chiamato prima di getBuggyVersionJiraAVList,
+	// perché i valori già calcolati restano nello stimatore precedente.
+	public void setProportionEstimator(ProportionEstimator proportionEstimator) {
+		this.proportionEstimator = proportionEstimator;
+	}
 
-			for (int i = 0; i < METRICS_NUMBER; i++) {
-				emptyArrayList.add(0);
-			}
-			
-			mapToBuildDataset.put(releaseIndex, filename, emptyArrayList);
-		}
+	// Costruisce l'estrattore e gli indici dei ticket prima di condividerli tra più thread
+	public void prepareTicketMatching(String projectName) {
+
+		ticketKeyExtractor = new TicketKeyExtractor(projectName);
+		getTicketsListRank();
+		getTicketBuggyRank();
 	}
 
-//	Ritorna la lista delle Affected Version di un ticket Jira, prendendo in input
-//	l'Array JSON da Jira
+	// Metto un record vuoto per le metriche nello store (indice release, nome del file, metriche con valori 0)
+
+	public void putEmptyRecord(int releaseIndex, String filename) {
+	
+		metricStore.putEmptyRecord(releaseIndex, metricStore.internPath(filename));
+	}
+
+//	Ritorna la lista dei nomi delle Affected Version di un ticket Jira, prendendo in input
+//	l'Array JSON da Jira. Tengo anche le versioni non ancora rilasciate: quando vengono rilasciate
+//	Jira non aggiorna il ticket, quindi vanno filtrate ad ogni run con getReleasedAVList.
 
 	public List<String> getJsonAVList(JSONArray json) throws JSONException {
 
 		List<String> affectedVersionList = new ArrayList<>();
-		
-		//Se il JSONArray è non vuoto
-		if (json.length() > 0) {
 
-			// Per ciascuna release nelle Affected Version
-			for (int i = 0; i < json.length(); i++) {
-				
-				//Prendo il singolo elemento nel JSONArray
-				JSONObject singleRelease = json.getJSONObject(i);
+		// Per ciascuna release nelle Affected Version prendo il campo "nome" del JSONObject
+		for (int i = 0; i < json.length(); i++) {
+			affectedVersionList.add(json.getJSONObject(i).getString("name"));
+		}
 
-				// controlla se la release ha una data
-				if (singleRelease.has(RELEASE_DATE)) {
-					//se la release ha una data, la aggiungo alla lista prendendo il campo "nome" del JSONObject
-					affectedVersionList.add(singleRelease.getString("name"));
-				}
+		return affectedVersionList;
+	}
+
+//	Ritorna le Affected Version che sono tra le release con data lette da Jira in questo run,
+//	nell'ordine in cui sono nel ticket
+
+	public List<String> getReleasedAVList(List<String> affectedVersionList) {
+
+		List<String> releasedVersionList = new ArrayList<>();
+
+		for (String affectedVersion : affectedVersionList) {
+			if (releaseTimeline.getVersionIndex(affectedVersion) != 0) {
+				releasedVersionList.add(affectedVersion);
 			}
 		}
 
-		return affectedVersionList;
+		return releasedVersionList;
 	}
 
 //	Ritorna la lista contenente (IV,FV, ticketID) per ciascun ticket contenuto nel messaggio di commit,
@@ -106,22 +147,17 @@ public class JiraLogic {
 	public List<Integer> getTicketMessageCommitBuggy(String commitMsg, String projectName) {
 
 		List<Integer> outcomes = new ArrayList<>();
-		Pattern pattern = null;
-		Matcher matcher = null;
 		
-		//Per ciascuna entry della mappa <ticketID, (IV, FV)>
-		for (Map.Entry<Integer, List<Integer>> entry : ticketBuggyIndex.entrySet()) {
-			// Controlla se il messaggio di commit contiene l'espressione
-			// "NomeProgetto-IssueID"
-			pattern = Pattern.compile("\\b" + projectName + "-" + entry.getKey() + "\\b", Pattern.CASE_INSENSITIVE);
-			matcher = pattern.matcher(commitMsg);
-			
+		//Estraggo una sola volta gli ID dal messaggio e li ordino come nell'iterazione su ticketBuggyIndex
+		List<Integer> ticketsFound = getTicketsInOrder(commitMsg, projectName, getTicketBuggyRank());
+		
+		for (Integer ticketID : ticketsFound) {
 			// Controlla se il messaggio di commit contiene l'issue ID marcato come "not
 			// checked"
-			if (matcher.find() && !outcomes.contains(entry.getKey())) {
-				outcomes.add(ticketBuggyIndex.get(entry.getKey()).get(0));
-				outcomes.add(ticketBuggyIndex.get(entry.getKey()).get(1));
-				outcomes.add(entry.getKey());
+			if (!outcomes.contains(ticketID)) {
+				outcomes.add(ticketBuggyIndex.get(ticketID).get(0));
+				outcomes.add(ticketBuggyIndex.get(ticketID).get(1));
+				outcomes.add(ticketID);
 			}
 		}
 		
@@ -132,105 +168,135 @@ public class JiraLogic {
 	//Dato il nome del progetto ed il messaggio di commit, controllo se quest'ultimo ha il ticketID riportato.
 	public List<Integer> getTicketMessageCommitBugFix(String commitMessage, String projectName) {
 
-		List<Integer> outcomes = new ArrayList<>();
-		Pattern pattern = null;
-		Matcher matcher = null;
+		//Gli ID sono già unici e nell'ordine di ticketsList
+		return getTicketsInOrder(commitMessage, projectName, getTicketsListRank());
+	}
 
-		for (Integer entry : ticketsList) {
+	// Ritorna gli ID "NomeProgetto-IssueID" presenti nel messaggio di commit e contenuti nell'indice
+	// passato, ordinati secondo la posizione che l'indice gli assegna.
+	private List<Integer> getTicketsInOrder(String commitMessage, String projectName, Map<Integer, Integer> ticketRank) {
 
-			// Controlla se il messaggio di commit contiene l'espressione
-			// "NomeProgetto-IssueID" 
-			pattern = Pattern.compile("\\b" + projectName + "-" + entry + "\\b", Pattern.CASE_INSENSITIVE);
-			matcher = pattern.matcher(commitMessage);
+		if (ticketKeyExtractor == null || !ticketKeyExtractor.getProjectName().equals(projectName)) {
+			ticketKeyExtractor = new TicketKeyExtractor(projectName);
+		}
 
-			// Controlla se il messaggio di commit contiene l'issue ID marcato come "not
-			// checked"
-			if (matcher.find() && !outcomes.contains(entry)) {
-				outcomes.add(entry);
+		List<Integer> outcomes = new ArrayList<>();
+		for (Integer ticketID : ticketKeyExtractor.extractTicketIds(commitMessage)) {
+			if (ticketRank.containsKey(ticketID)) {
+				outcomes.add(ticketID);
 			}
 		}
+		outcomes.sort(Comparator.comparing(ticketRank::get));
 		return outcomes;
 	}
 
+	// Indice <ticketID, posizione in ticketsList>, ricostruito solo se la lista è cambiata
+	private Map<Integer, Integer> getTicketsListRank() {
+
+		if (ticketsListRank == null || ticketsListRankSize != ticketsList.size()) {
+			ticketsListRank = new HashMap<>();
+			for (Integer ticketID : ticketsList) {
+				ticketsListRank.putIfAbsent(ticketID, ticketsListRank.size());
+			}
+			ticketsListRankSize = ticketsList.size();
+		}
+		return ticketsListRank;
+	}
+
+	// Indice <ticketID, posizione nell'iterazione di ticketBuggyIndex>, ricostruito solo se la mappa è cambiata
+	private Map<Integer, Integer> getTicketBuggyRank() {
+
+		if (ticketBuggyRank == null || ticketBuggyRankSize != ticketBuggyIndex.size()) {
+			ticketBuggyRank = new HashMap<>();
+			for (Integer ticketID : ticketBuggyIndex.keySet()) {
+				ticketBuggyRank.put(ticketID, ticketBuggyRank.size());
+			}
+			ticketBuggyRankSize = ticketBuggyIndex.size();
+		}
+		return ticketBuggyRank;
+	}
+
 	// Calcolo il valore delle metriche richieste per singolo file contenuto nel
 	// commit
 
-	public List<Integer> getMetrics(DiffEntry entry, int version, DiffFormatter diffFormatter,
+	public void getMetrics(DiffEntry entry, int version, DiffFormatter diffFormatter,
 			List<DiffEntry> filesChanged, List<Integer> ticketAssociated, int upperBoundVersion) throws IOException {
 
-//		 Struttura metriche: 0->LOC_Touched; 1-> NR; 2-> NFix 
-//		 3->LOC_Added; 4->MAX_LOC_Added; 5->ChgSetSize; 6->Max_ChgSet
-//		 7->Avg_ChgSet; 8->AVG_LOC_Added.
-
-		// Prende le metriche correnti per la coppia (versione, nome del file)
-		@SuppressWarnings("unchecked")
-		ArrayList<Integer> outcome = (ArrayList<Integer>) mapToBuildDataset.get(version, entry.getNewPath());
-
 		// Controllo se la versione di appartenenza del file è minore dell'upperBound
 		if (version < upperBoundVersion) {
 
-			int linesTouched = 0;
-			int linesAdded = 0;
-			int chgSetSize = 0;
+			int[] linesChanged = countChangedLines(entry, diffFormatter);
+			getMetrics(entry.getNewPath(), version, linesChanged[0], linesChanged[1], filesChanged.size(),
+					ticketAssociated, upperBoundVersion);
+		}
+	}
 
-			// Numero totale di file "committati"
-			chgSetSize = filesChanged.size();
+	// Come sopra, partendo dalle linee toccate ed aggiunte già calcolate e dal numero totale di file "committati"
+	public void getMetrics(String path, int version, int linesTouched, int linesAdded, int chgSetSize,
+			List<Integer> ticketAssociated, int upperBoundVersion) {
 
-			// Per ogni modifica fatta al file
-			for (Edit edit : diffFormatter.toFileHeader(entry).toEditList()) {
+//		 Struttura metriche: vedi MetricStore. NFix conta i ticket fixati, la bugginess
+//		 viene impostata se il commit è associato a qualche ticket.
 
-				// Ne controllo il tipo ed incremento la variabile corrispondente (in caso di insert, delete o replace)
-				if (edit.getType() == Edit.Type.INSERT) {
-					linesAdded += edit.getEndB() - edit.getBeginB();
-					linesTouched += edit.getEndB() - edit.getBeginB();
-				} else if (edit.getType() == Edit.Type.DELETE) {
-					linesTouched += edit.getEndA() - edit.getBeginA();
-				} else if (edit.getType() == Edit.Type.REPLACE) {
-					linesTouched += edit.getEndA() - edit.getBeginA();
-				}
-			}
+		// Controllo se la versione di appartenenza del file è minore dell'upperBound
+		if (version < upperBoundVersion) {
 
-			// Aggiorno ogni metrica
-			outcome.set(0, outcome.get(0) + linesTouched);
-			outcome.set(1, outcome.get(1) + 1);
+			// Aggiorno ogni metrica della coppia (versione, nome del file)
+			int fileId = metricStore.internPath(path);
+			metricStore.addRevision(version, fileId, linesTouched, linesAdded, chgSetSize, ticketAssociated.size());
 
-			// Controllo se il commit è associato a qualche ticket
-			if (ticketAssociated.isEmpty()) {
-				outcome.set(2, outcome.get(2) + 0);
+			// Se il commit è associato a qualche ticket, metto la classe a buggy
+			if (!ticketAssociated.isEmpty()) {
+				metricStore.setBuggy(version, fileId);
+			}
+		}
+	}
 
-			} else {
+	// Ritorna le linee toccate (aggiunte, modificate o rimosse) e quelle aggiunte nel file, in quest'ordine
+	public static int[] countChangedLines(DiffEntry entry, DiffFormatter diffFormatter) throws IOException {
 
-				// In caso affermativo, metto a buggy e mi calcolo "NFix", cioè il numero di bug
-				// fixati
-				outcome.set(2, outcome.get(2) + ticketAssociated.size());
-				outcome.set(9, 1);  //Setto la classe a buggy
-			}
+		return countChangedLines(diffFormatter.toFileHeader(entry).toEditList());
+	}
 
-			outcome.set(3, outcome.get(3) + linesAdded); //Aggiorno le linee di codice aggiunte
+	// Come sopra, a partire dalla lista delle modifiche fatte al file
+	public static int[] countChangedLines(List<Edit> edits) {
 
-			if (linesAdded > outcome.get(4)) {  //Aggiorno il numero massimo di linee di codice aggiunte
-				outcome.set(4, linesAdded);
-			}
+		int linesTouched = 0;
+		int linesAdded = 0;
 
-			outcome.set(5, outcome.get(5) + chgSetSize); //Aggiorno il changing set size
+		// Per ogni modifica fatta al file
+		for (Edit edit : edits) {
 
-			if (chgSetSize > outcome.get(6)) {    //Mi calcolo il massimo changing set 
-				outcome.set(6, chgSetSize);
+			// Ne controllo il tipo ed incremento la variabile corrispondente (in caso di insert, delete o replace)
+			if (edit.getType() == Edit.Type.INSERT) {
+				linesAdded += edit.getEndB() - edit.getBeginB();
+				linesTouched += edit.getEndB() - edit.getBeginB();
+			} else if (edit.getType() == Edit.Type.DELETE) {
+				linesTouched += edit.getEndA() - edit.getBeginA();
+			} else if (edit.getType() == Edit.Type.REPLACE) {
+				linesTouched += edit.getEndA() - edit.getBeginA();
 			}
 		}
-		
-		return outcome;
+
+		return new int[] { linesTouched, linesAdded };
 	}
 
-	// Imposto il file come "buggy" nella multi key map del dataset
+	// Imposto il file come "buggy" nello store del dataset
 
-	@SuppressWarnings("unchecked")
 	public void setClassBugginess(List<Integer> ticketInformationBugginess, DiffEntry entry, int numberOfVersions) {
 
+		setClassBugginess(ticketInformationBugginess, entry.getNewPath(), entry.getChangeType(), numberOfVersions);
+	}
+
+	public void setClassBugginess(List<Integer> ticketInformationBugginess, String path, DiffEntry.ChangeType changeType,
+			int numberOfVersions) {
+
 		// Controllo la lista dei ticket associati al commit ed il tipo di modifiche
 		// apportate al file
-		if (!ticketInformationBugginess.isEmpty() && (entry.getChangeType() == DiffEntry.ChangeType.MODIFY
-				|| entry.getChangeType() == DiffEntry.ChangeType.DELETE)) {
+		if (!ticketInformationBugginess.isEmpty() && (changeType == DiffEntry.ChangeType.MODIFY
+				|| changeType == DiffEntry.ChangeType.DELETE)) {
+
+			int fileId = metricStore.internPath(path);
 
 			// Per ogni ticket (IV, OV, ticketId), vado a passi di 3
 			for (int i = 0; i < ticketInformationBugginess.size(); i += 3) {
@@ -242,13 +308,10 @@ public class JiraLogic {
 				// incluso nella prima metà delle release
 				for (int version = startVersion; version < endVersion && version < numberOfVersions; version++) {
 
-					if (!mapToBuildDataset.containsKey(version, entry.getNewPath())) {
-						putEmptyRecord(version, entry.getNewPath());
-
-						// Imposto la classe come buggy
-						List<Integer> outcome = (ArrayList<Integer>) mapToBuildDataset.get(version, entry.getNewPath());
-						outcome.set(9, 1);
-						mapToBuildDataset.replace(version, entry.getNewPath(), outcome);
+					// Imposto la classe come buggy solo se il record non esisteva ancora
+					if ((baseDataset == null || !baseDataset.containsRecord(version, path))
+							&& metricStore.putEmptyRecord(version, fileId)) {
+						metricStore.setBuggy(version, fileId);
 					}
 				}
 			}
@@ -287,12 +350,10 @@ public class JiraLogic {
 				//Mi calcolo il valore di proportion utilizzando la formula
 				proportion = getAVProportion(ivIndex, fvIndex, ovIndex);
 				
-				//Se il valore di proportion è positivo, inserisco il valore nella mappa 
-				//in questo formato: 203=[1.0, 2.0], ovvero n°ticket, 1 ed il valore appena
-				//calcolato con la formula. Applico proportion increment.
+				//Se il valore di proportion è positivo, lo aggiungo allo stimatore
+				//insieme al n°ticket.
 				if (proportion > 0) {
-					proportionTickets.put(ticketID, 1.0);
-					proportionTickets.put(ticketID, proportion);
+					proportionEstimator.addTicket(ticketID, proportion);
 				}
 			}
 			
@@ -352,62 +413,18 @@ public class JiraLogic {
 	// la data del commit. Formato -->2013-03-27 = [4.2.1, 5]. 
 	public int getCommitAppartainingVersionIndex(LocalDate fileCommitDate) {
 		
-		int lastIndex = 0;
-		// Itero su tutte le versioni che hanno una release date
-		for (LocalDate ld : versionListWithReleaseDateAndIndex.keySet()) {
-			Collection<String> lineKey = versionListWithReleaseDateAndIndex.get(ld);
-			int size = lineKey.size();
-			String lastIndexValue = null;
-
-			// Se la size è uguale a 3, prendo il terzo elemento come indice, altrimenti il
-			// secondo. BookKeeper ha tutti elementi di size 2. OpenJPA anche size 3.
-			if (size == 3) {
-				lastIndexValue = Iterables.get(lineKey, 2);
-			} else {
-				lastIndexValue = Iterables.get(lineKey, 1);
-			}
-			
-			lastIndex = Integer.valueOf(lastIndexValue);
-			
-			// Mi interrompo se la data della versione in questione è successiva a quella del commit
-			// passato come parametro.
-			if (ld.isAfter(fileCommitDate)) {
-				break;
-			}
-		}
-		return lastIndex;
+		// Prendo la prima versione con data di rilascio successiva a quella del commit,
+		// o l'ultima se il commit è successivo a tutte le release.
+		return releaseTimeline.getVersionIndexAfter(fileCommitDate);
 	}
 
 	// Mi calcolo il valore di Proportion dei ticket precedenti (se ce ne sono,
-	// altrimenti il valore è zero). Applico proportion increment.
+	// altrimenti il valore è zero), secondo la strategia dello stimatore.
+	// Con proportion increment uso tutti i ticket con ID inferiore al considerato.
 
 	public double getProportionPreviousTicket(int ticketID) {
 
-		int count = 0;
-		double proportion = 0;
-		double outcome;
-
-		// Per ogni ticket che ha un valore calcolato di Proportion
-		for (int i : proportionTickets.keySet()) {
-
-			//Controllo se l'ID del ticket è inferiore al considerato e ci sommo il valore calcolato di P
-			//Applicazione di proportion increment
-			if (i < ticketID && Iterables.get(proportionTickets.get(i), 0) != -1.0) {
-				count += 1;
-				proportion += Iterables.get(proportionTickets.get(i), 1);
-			}
-		}
-
-		// Se il numero di ticket precedenti è >0, mi calcolo il valore medio di P
-		if (count > 0) {
-			outcome = count / proportion;
-		} else {
-
-			// Altrimenti assegno 0
-			outcome = 0;
-		}
-
-		return outcome;
+		return proportionEstimator.estimate(ticketID);
 	}
 
 	// Calcolo con la formula il valore di proportion a partire dal ticket
@@ -436,105 +453,42 @@ public class JiraLogic {
 	}
 
 	// Calcolo l'indice della Fixed Version
-	public int getFixedVersion(String resolutionDate) throws NumberFormatException {
+	public int getFixedVersion(String resolutionDate) {
 
-		int fvIndex = 0;
-
-		// Itero su tutte le versioni con release date
-		for (LocalDate ld : versionListWithReleaseDateAndIndex.keySet()) {
-
-//			Assegno prima del controllo per garantirmi che, se un ticket ha una data di risoluzione
-//			seguente all'ultima versione rilasciata, la associo a quest'ultima versione. In questo 
-//			modo assegno una FV al ticket non reale, perché non voglio perdere la lista delle AV
-//			del ticket
-
-//			se la keymap corrente ha 3 elementi, allora anziché prendere quello in posizione 2 prendi quello in posizione 3
-			Collection<String> lineKey = versionListWithReleaseDateAndIndex.get(ld);
-			int size = lineKey.size();
-			String fxIndexValue = null;
-			if (size == 3) {
-				fxIndexValue = Iterables.get(lineKey, 2);
-			} else {
-				fxIndexValue = Iterables.get(lineKey, 1);
-			}
-			fvIndex = Integer.valueOf(fxIndexValue);
-			
-			//Mi fermo se la data è successiva o uguale alla resolutionDate del ticket
-			if (ld.isEqual(LocalDate.parse(resolutionDate)) || ld.isAfter(LocalDate.parse(resolutionDate))) {
-
-				break;
-			}
-		}
-		
-		return fvIndex;
+//		Prendo la prima versione con data uguale o successiva alla resolutionDate del ticket.
+//		Se un ticket ha una data di risoluzione seguente all'ultima versione rilasciata, la associo
+//		a quest'ultima versione. In questo modo assegno una FV al ticket non reale, perché non voglio
+//		perdere la lista delle AV del ticket
+		return releaseTimeline.getVersionIndexFrom(LocalDate.parse(resolutionDate));
 	}
 
 	// Calcolo l'indice dell'Opening Version, usando la data di creazione del ticket.
-	public int getOpeningVersion(String ticketCreationDate) throws NumberFormatException {
-
-		int ovIndex = 0;
-		// Itero sopra ogni versione che ha associata una release date
-
-		for (LocalDate ld : versionListWithReleaseDateAndIndex.keySet()) {
-
-//			Assegno prima del controllo per garantirmi che, se un commit ha una data di commit
-//			seguente all'ultima versione rilasciata, la associo a quest'ultima versione. In questo 
-//			modo assegno una FV al ticket non reale, perché non voglio perdere la lista delle AV
-//			del ticket
-
-//			se la keymap corrente ha 3 elementi, allora anziché prendere quello in posizione 2 prendi quello in posizione 3
-			Collection<String> lineKey = versionListWithReleaseDateAndIndex.get(ld);
-			int size = lineKey.size();
-			String oxIndexValue = null;
-			if (size == 3) {
-				oxIndexValue = Iterables.get(lineKey, 2);
-			} else {
-				oxIndexValue = Iterables.get(lineKey, 1);
-			}
-			ovIndex = Integer.valueOf(oxIndexValue);
-			
-			//Mi fermo se la data è successiva o uguale alla data di creazione del ticket
-			if (ld.isAfter(LocalDate.parse(ticketCreationDate)) || ld.isEqual(LocalDate.parse(ticketCreationDate))) {
-
-				break;
-			}
+	public int getOpeningVersion(String ticketCreationDate) {
 
-		}
-
-		return ovIndex;
+//		Prendo la prima versione con data uguale o successiva alla data di creazione del ticket,
+//		o l'ultima versione rilasciata se il ticket è stato aperto dopo tutte le release
+		return releaseTimeline.getVersionIndexFrom(LocalDate.parse(ticketCreationDate));
 	}
 
-	// Calcolo l'indice della IV più vecchia a partire dalla lista delle AV di Jira. Qui
+	// Calcolo l'indice della IV a partire dalla lista delle AV di Jira. Qui
 	// prendo la lista delle Affected Version da Jira e la data di creazione del ticket,
-	// sempre da Jira.
+	// sempre da Jira. Tra le AV rilasciate prima della creazione del ticket prendo quella
+	// con l'indice più alto.
 	public int getIVfromAffectedVersion(List<String> avVersionList, String creationDate) {
 
 		int ivVersion = 0;
+		LocalDate ticketCreationDate = LocalDate.parse(creationDate);
 
-//		Itero su tutte le versioni releaseDate e versionsList per trovare
-//		l'AV più vecchia
-		for (LocalDate ld : versionListWithReleaseDateAndIndex.keySet()) {
-			for (String s : avVersionList) {
-
-				Collection<String> lineKey = versionListWithReleaseDateAndIndex.get(ld);
-				int size = lineKey.size();
-				String ivVersionValue = null;
-
-//				Controllo se l'indice della versione è uguale a quella contenuta nella lista,
-//				controllando inoltre che la versione di rilascio è precedente alla creazione del
-//				ticket. 
-				if (Iterables.get(versionListWithReleaseDateAndIndex.get(ld), 0).equals(s)
-						&& ld.isBefore(LocalDate.parse(creationDate))) {
-
-//				se la keymap corrente ha 3 elementi, allora anziché prendere quello in posizione 2 prendi quello in posizione 3
-					if (size == 3) {
-						ivVersionValue = Iterables.get(lineKey, 2);
-					} else {
-						ivVersionValue = Iterables.get(lineKey, 1);
-					}
-					ivVersion = Integer.valueOf(ivVersionValue);
-					break;
-				}
+		for (String s : avVersionList) {
+
+			int versionIndex = releaseTimeline.getVersionIndex(s);
+
+//			Se più release escono nella stessa data, con l'AV confronto solo la prima,
+//			controllando inoltre che la versione di rilascio è precedente alla creazione del
+//			ticket.
+			if (versionIndex > ivVersion && releaseTimeline.getVersionNames(versionIndex).get(0).equals(s)
+					&& releaseTimeline.getReleaseDate(versionIndex).isBefore(ticketCreationDate)) {
+				ivVersion = versionIndex;
 			}
 		}
 
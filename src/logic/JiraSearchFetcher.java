@@ -0,0 +1,215 @@
+package logic;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONException;
+
+import main.LoggerClass;
+
+// Scarica tutte le pagine di una ricerca di Jira. La prima pagina dà il totale dei ticket, le altre vengono
+// scaricate in parallelo (al massimo "parallelism" richieste insieme e non più di "requestsPerSecond" al secondo)
+// ma passate all'handler sempre nell'ordine della ricerca, come con il download sequenziale.
+// HttpURLConnection riusa le connessioni keep-alive se la risposta viene letta tutta e chiusa.
+public class JiraSearchFetcher {
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+	private static final int READ_TIMEOUT_MILLIS = 120_000;
+	private static final int MAX_RETRIES = 5;
+	private static final long INITIAL_BACKOFF_MILLIS = 1_000;
+	private static final int TOO_MANY_REQUESTS = 429;
+
+	private final int parallelism;
+
+	// Intervallo minimo tra l'inizio di due richieste, e momento in cui può partire la prossima
+	private final long requestIntervalNanos;
+	private long nextRequestNanos = System.nanoTime();
+
+	// Momento in cui è stata chiesta a Jira la pagina più vecchia dell'ultimo fetch, anche se letta dalla cache
+	private final AtomicLong oldestResponseMillis = new AtomicLong(Long.MAX_VALUE);
+
+	public JiraSearchFetcher(int parallelism, double requestsPerSecond) {
+
+		if (parallelism < 1 || requestsPerSecond <= 0) {
+			throw new IllegalArgumentException("Parallelismo e richieste al secondo devono essere positivi: "
+					+ parallelism + ", " + requestsPerSecond);
+		}
+		this.parallelism = parallelism;
+		this.requestIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+	}
+
+	// Scarica la ricerca a pagine di pageSize ticket (url senza startAt e maxResults) e passa i ticket
+	// all'handler in ordine. Ritorna il numero di ticket letti.
+	public int fetch(String searchUrl, int pageSize, ParserJson.IssueHandler handler) throws IOException, JSONException {
+
+		oldestResponseMillis.set(Long.MAX_VALUE);
+		ParserJson.SearchPage firstPage = readPage(downloadPage(searchUrl, 0, pageSize), handler);
+		int total = firstPage.getTotal();
+		int issueCount = firstPage.getIssueCount();
+
+		// Jira può limitare maxResults: in quel caso la dimensione vera della pagina è quella della prima
+		int effectivePageSize = Math.min(pageSize, issueCount);
+		if (issueCount >= total || effectivePageSize == 0) {
+			return issueCount;
+		}
+
+		LoggerClass.infoLog("Scarico {} ticket in pagine da {} con {} richieste in parallelo...", total, effectivePageSize,
+				parallelism);
+
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		try {
+			// Pagine in download, nell'ordine della ricerca. Ne tengo al massimo 2 * parallelism, così le pagine
+			// già scaricate che aspettano il loro turno non crescono senza limite.
+			Deque<Future<byte[]>> pages = new ArrayDeque<>();
+			int nextStartAt = effectivePageSize;
+
+			while (nextStartAt < total || !pages.isEmpty()) {
+
+				while (nextStartAt < total && pages.size() < 2 * parallelism) {
+					int startAt = nextStartAt;
+					pages.add(executor.submit(() -> downloadPage(searchUrl, startAt, effectivePageSize)));
+					nextStartAt += effectivePageSize;
+				}
+
+				ParserJson.SearchPage page = readPage(pages.poll().get(), handler);
+				issueCount += page.getIssueCount();
+
+				// Una pagina vuota prima del totale vuol dire che Jira non ha altri ticket da darmi
+				if (page.getIssueCount() == 0) {
+					break;
+				}
+			}
+			return issueCount;
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Download dei ticket da Jira interrotto", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Errore durante il download dei ticket da Jira", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static ParserJson.SearchPage readPage(byte[] content, ParserJson.IssueHandler handler) throws IOException, JSONException {
+
+		try (Reader rd = new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8)) {
+			return ParserJson.readSearchPage(rd, handler);
+		}
+	}
+
+	// La pagina passa dalla cache delle risposte di ParserJson, se c'è, con lo stesso url del download sequenziale
+	private byte[] downloadPage(String searchUrl, int startAt, int pageSize) throws IOException {
+
+		HttpResponseCache.Response response = ParserJson.readResponseFromUrl(getPageUrl(searchUrl, startAt, pageSize),
+				this::download);
+		oldestResponseMillis.accumulateAndGet(response.getFetchedAt(), Math::min);
+		return response.getContent();
+	}
+
+	// Momento in cui Jira ha dato la pagina più vecchia letta dall'ultimo fetch: i ticket aggiornati dopo
+	// potrebbero mancare, quindi la prossima sincronizzazione deve partire da qui
+	public long getOldestResponseMillis() {
+		return oldestResponseMillis.get();
+	}
+
+	// Url della pagina della ricerca che parte dal ticket startAt
+	public static String getPageUrl(String searchUrl, int startAt, int pageSize) {
+		return searchUrl + "&startAt=" + startAt + "&maxResults=" + pageSize;
+	}
+
+	// GET dell'url, ripetuto con attesa esponenziale (o quella indicata da Retry-After) se Jira risponde 429 o 5xx
+	private byte[] download(String url) throws IOException {
+
+		long backoffMillis = INITIAL_BACKOFF_MILLIS;
+
+		for (int attempt = 0;; attempt++) {
+
+			waitForRequestSlot();
+
+			HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+			connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+			connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+			connection.setRequestProperty("Accept", "application/json");
+
+			int status = connection.getResponseCode();
+			if (status == HttpURLConnection.HTTP_OK) {
+				try (InputStream is = connection.getInputStream()) {
+					return ParserJson.readAll(is);
+				}
+			}
+
+			// Leggo e chiudo anche il corpo dell'errore, altrimenti la connessione non viene riusata
+			try (InputStream es = connection.getErrorStream()) {
+				if (es != null) {
+					ParserJson.readAll(es);
+				}
+			}
+
+			boolean retryable = status == TOO_MANY_REQUESTS || status >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+			if (!retryable || attempt >= MAX_RETRIES) {
+				throw new IOException("Jira ha risposto " + status + " per " + url);
+			}
+
+			long waitMillis = retryAfterMillis(connection, backoffMillis);
+			LoggerClass.infoLog("Jira ha risposto {}, riprovo tra {} ms: {}", status, waitMillis, url);
+			sleep(waitMillis);
+			backoffMillis *= 2;
+		}
+	}
+
+	private static long retryAfterMillis(HttpURLConnection connection, long defaultMillis) {
+
+		String retryAfter = connection.getHeaderField("Retry-After");
+		if (retryAfter != null) {
+			try {
+				return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+			} catch (NumberFormatException e) {
+				// Retry-After può essere anche una data: in quel caso uso l'attesa esponenziale
+			}
+		}
+		return defaultMillis;
+	}
+
+	// Limite di richieste al secondo: ogni richiesta si prenota il prossimo intervallo libero e aspetta che arrivi
+	private void waitForRequestSlot() throws IOException {
+
+		long slot;
+		synchronized (this) {
+			slot = Math.max(nextRequestNanos, System.nanoTime());
+			nextRequestNanos = slot + requestIntervalNanos;
+		}
+		sleep(TimeUnit.NANOSECONDS.toMillis(slot - System.nanoTime()));
+	}
+
+	private static void sleep(long millis) throws IOException {
+
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Download dei ticket da Jira interrotto", e);
+		}
+	}
+
+}
@@ -0,0 +1,238 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MetricStore {
+
+	/*
+	 * Metriche salvate per ogni coppia (versione, file):
+	 *
+	 * 0 - LOC_Touched 1 - NR 2 - NFix 3 - LOC_Added 4 - MAX_LOC_Added
+	 * 5 - ChgSetSize 6 - Max_ChgSet, più la bugginess in un BitSet a parte.
+	 * AVG_ChgSet e Avg_LOC_Added non vengono salvate, si calcolano in scrittura.
+	 */
+	public static final int LOC_TOUCHED = 0;
+	public static final int NUMBER_REVISIONS = 1;
+	public static final int NUMBER_BUG_FIX = 2;
+	public static final int LOC_ADDED = 3;
+	public static final int MAX_LOC_ADDED = 4;
+	public static final int CHG_SET_SIZE = 5;
+	public static final int MAX_CHG_SET = 6;
+	private static final int METRICS_NUMBER = 7;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	// Map<path del file, ID del file>: ogni path viene salvato una sola volta, qualunque sia il numero di versioni
+	private final Map<String, Integer> fileIds = new HashMap<>();
+	private final List<String> filePaths = new ArrayList<>();
+
+	// Colonne delle metriche per ogni versione, indicizzate per numero di versione
+	private VersionColumns[] versions = new VersionColumns[0];
+
+	// Metriche di una singola versione: una colonna di int per ciascuna metrica, indicizzata per ID del file
+	private static class VersionColumns {
+
+		private final BitSet records = new BitSet();
+		private final BitSet buggy = new BitSet();
+		private int[][] columns = new int[METRICS_NUMBER][INITIAL_CAPACITY];
+
+		private void ensureCapacity(int fileId) {
+
+			if (fileId >= columns[0].length) {
+				int capacity = Math.max(columns[0].length * 2, fileId + 1);
+				for (int i = 0; i < METRICS_NUMBER; i++) {
+					columns[i] = Arrays.copyOf(columns[i], capacity);
+				}
+			}
+		}
+	}
+
+	// Ritorna l'ID del file, assegnandone uno nuovo se il path non è mai stato visto
+	public int internPath(String path) {
+
+		Integer fileId = fileIds.get(path);
+		if (fileId == null) {
+			fileId = filePaths.size();
+			fileIds.put(path, fileId);
+			filePaths.add(path);
+		}
+		return fileId;
+	}
+
+	// Ritorna l'ID del file, o -1 se il path non è presente
+	public int getFileId(String path) {
+
+		Integer fileId = fileIds.get(path);
+		return fileId == null ? -1 : fileId;
+	}
+
+	public String getPath(int fileId) {
+		return filePaths.get(fileId);
+	}
+
+	public int getFileCount() {
+		return filePaths.size();
+	}
+
+	public boolean containsRecord(int version, String path) {
+
+		int fileId = getFileId(path);
+		return fileId >= 0 && containsRecord(version, fileId);
+	}
+
+	public boolean containsRecord(int version, int fileId) {
+		return version < versions.length && versions[version] != null && versions[version].records.get(fileId);
+	}
+
+	// Metto un record con tutte le metriche a 0 per la coppia (versione, file), se non è già presente.
+	// Ritorna true se il record è stato creato.
+	public boolean putEmptyRecord(int version, int fileId) {
+
+		VersionColumns versionColumns = getOrCreateVersion(version);
+		if (versionColumns.records.get(fileId)) {
+			return false;
+		}
+		versionColumns.ensureCapacity(fileId);
+		versionColumns.records.set(fileId);
+		return true;
+	}
+
+	// Aggiunge una revisione del file nella versione: somma le linee toccate ed aggiunte, il changing set
+	// ed il numero di bug fixati, ed aggiorna i massimi.
+	public void addRevision(int version, int fileId, int linesTouched, int linesAdded, int chgSetSize, int bugFixed) {
+
+		putEmptyRecord(version, fileId);
+		int[][] columns = versions[version].columns;
+
+		columns[LOC_TOUCHED][fileId] += linesTouched;
+		columns[NUMBER_REVISIONS][fileId] += 1;
+		columns[NUMBER_BUG_FIX][fileId] += bugFixed;
+		columns[LOC_ADDED][fileId] += linesAdded;
+		columns[MAX_LOC_ADDED][fileId] = Math.max(columns[MAX_LOC_ADDED][fileId], linesAdded);
+		columns[CHG_SET_SIZE][fileId] += chgSetSize;
+		columns[MAX_CHG_SET][fileId] = Math.max(columns[MAX_CHG_SET][fileId], chgSetSize);
+	}
+
+	public void setBuggy(int version, int fileId) {
+
+		putEmptyRecord(version, fileId);
+		versions[version].buggy.set(fileId);
+	}
+
+	public boolean isBuggy(int version, int fileId) {
+		return containsRecord(version, fileId) && versions[version].buggy.get(fileId);
+	}
+
+	public int getLocTouched(int version, int fileId) {
+		return getMetric(version, fileId, LOC_TOUCHED);
+	}
+
+	public int getNumberRevisions(int version, int fileId) {
+		return getMetric(version, fileId, NUMBER_REVISIONS);
+	}
+
+	public int getNumberBugFix(int version, int fileId) {
+		return getMetric(version, fileId, NUMBER_BUG_FIX);
+	}
+
+	public int getLocAdded(int version, int fileId) {
+		return getMetric(version, fileId, LOC_ADDED);
+	}
+
+	public int getMaxLocAdded(int version, int fileId) {
+		return getMetric(version, fileId, MAX_LOC_ADDED);
+	}
+
+	public int getChgSetSize(int version, int fileId) {
+		return getMetric(version, fileId, CHG_SET_SIZE);
+	}
+
+	public int getMaxChgSet(int version, int fileId) {
+		return getMetric(version, fileId, MAX_CHG_SET);
+	}
+
+	// Ritorna il valore della metrica, 0 se il record non esiste
+	public int getMetric(int version, int fileId, int metric) {
+		return containsRecord(version, fileId) ? versions[version].columns[metric][fileId] : 0;
+	}
+
+	// Ritorna, in ordine crescente, le versioni che hanno almeno un record
+	public int[] getVersions() {
+
+		int[] outcome = new int[versions.length];
+		int count = 0;
+		for (int version = 0; version < versions.length; version++) {
+			if (versions[version] != null && !versions[version].records.isEmpty()) {
+				outcome[count++] = version;
+			}
+		}
+		return Arrays.copyOf(outcome, count);
+	}
+
+	// Ritorna, in ordine crescente, gli ID dei file che hanno un record nella versione
+	public int[] getFileIds(int version) {
+
+		if (version >= versions.length || versions[version] == null) {
+			return new int[0];
+		}
+		return versions[version].records.stream().toArray();
+	}
+
+	// Numero totale di record (versione, file)
+	public int size() {
+
+		int size = 0;
+		for (VersionColumns versionColumns : versions) {
+			if (versionColumns != null) {
+				size += versionColumns.records.cardinality();
+			}
+		}
+		return size;
+	}
+
+	// Unisce le metriche di un'altra mappa in questa. I record nuovi vengono copiati così come sono; per quelli
+	// già presenti sommo i contatori, prendo i massimi e la bugginess arriva solo dai commit di bugfix (NFix > 0),
+	// perché un record esistente non viene mai marcato da JiraLogic.setClassBugginess.
+	public void merge(MetricStore partial) {
+
+		for (int version : partial.getVersions()) {
+			int[][] partialColumns = partial.versions[version].columns;
+
+			for (int partialId : partial.getFileIds(version)) {
+				int fileId = internPath(partial.getPath(partialId));
+				boolean created = putEmptyRecord(version, fileId);
+				VersionColumns versionColumns = versions[version];
+
+				for (int metric = 0; metric < METRICS_NUMBER; metric++) {
+					int value = partialColumns[metric][partialId];
+					if (metric == MAX_LOC_ADDED || metric == MAX_CHG_SET) {
+						versionColumns.columns[metric][fileId] = Math.max(versionColumns.columns[metric][fileId], value);
+					} else {
+						versionColumns.columns[metric][fileId] += value;
+					}
+				}
+
+				if (created ? partial.isBuggy(version, partialId) : partialColumns[NUMBER_BUG_FIX][partialId] > 0) {
+					versionColumns.buggy.set(fileId);
+				}
+			}
+		}
+	}
+
+	private VersionColumns getOrCreateVersion(int version) {
+
+		if (version >= versions.length) {
+			versions = Arrays.copyOf(versions, version + 1);
+		}
+		if (versions[version] == null) {
+			versions[version] = new VersionColumns();
+		}
+		return versions[version];
+	}
+
+}
@@ -1,6 +1,8 @@
 package logic;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -11,30 +13,174 @@ import java.nio.charset.StandardCharsets;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 public class ParserJson {
 
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String ISSUES = "issues";
+	private static final String TOTAL = "total";
+
+	// Cache delle risposte, null per scaricare sempre
+	private static HttpResponseCache responseCache;
+
 	private ParserJson() {
 
 	}
 
-	private static String readAll(Reader rd) throws IOException {
+	public static void setResponseCache(HttpResponseCache cache) {
+		responseCache = cache;
+	}
+
+	// Riceve i ticket di una pagina della ricerca di Jira, uno alla volta
+	public interface IssueHandler {
+		void handle(JSONObject issue) throws JSONException;
+	}
+
+	// Valori di una pagina della ricerca letti durante lo streaming
+	public static final class SearchPage {
+
+		private final int total;
+		private final int issueCount;
 
-		StringBuilder sb = new StringBuilder();
-		int cp;
-		while ((cp = rd.read()) != -1) {
-			sb.append((char) cp);
+		private SearchPage(int total, int issueCount) {
+			this.total = total;
+			this.issueCount = issueCount;
+		}
+
+		// Numero totale di ticket della ricerca
+		public int getTotal() {
+			return total;
+		}
+
+		// Numero di ticket contenuti nella pagina
+		public int getIssueCount() {
+			return issueCount;
 		}
-		return sb.toString();
 	}
 
-	public static JSONObject readJsonFromUrl(String url) throws IOException, JSONException {
+	static byte[] readAll(InputStream is) throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = is.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] download(String url) throws IOException {
 
 		try (InputStream is = new URL(url).openStream();) {
-			BufferedReader rd = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8.name()));
-			String jsonText = readAll(rd);
-			return new JSONObject(jsonText);
+			return readAll(is);
+		}
+	}
+
+	// Contenuto della risposta, dalla cache se c'è o altrimenti con il downloader passato
+	static byte[] readBytesFromUrl(String url, HttpResponseCache.Downloader downloader) throws IOException {
+		return readResponseFromUrl(url, downloader).getContent();
+	}
+
+	// Come readBytesFromUrl, con il momento in cui la risposta è stata chiesta a Jira
+	static HttpResponseCache.Response readResponseFromUrl(String url, HttpResponseCache.Downloader downloader) throws IOException {
+		return responseCache == null ? HttpResponseCache.download(url, downloader) : responseCache.getResponse(url, downloader);
+	}
+
+	// Modalità della cache delle risposte, OFF se non c'è
+	public static HttpResponseCache.Mode getResponseCacheMode() {
+		return responseCache == null ? HttpResponseCache.Mode.OFF : responseCache.getMode();
+	}
+
+	// Senza cache leggo direttamente dalla connessione, altrimenti dal contenuto in cache
+	private static Reader openReader(String url) throws IOException {
+
+		InputStream is = responseCache == null ? new URL(url).openStream()
+				: new ByteArrayInputStream(responseCache.get(url, ParserJson::download));
+		return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	public static JSONObject readJsonFromUrl(String url) throws IOException, JSONException {
+
+		try (Reader rd = openReader(url)) {
+			return new JSONObject(new JSONTokener(rd));
+		}
+	}
+
+	// Legge una pagina della ricerca di Jira e passa all'handler un ticket alla volta, appena è stato letto,
+	// senza costruire il JSONObject dell'intera pagina: in memoria c'è un solo ticket per volta.
+	public static SearchPage readIssuesFromUrl(String url, IssueHandler handler) throws IOException, JSONException {
+
+		try (Reader rd = openReader(url)) {
+			return readSearchPage(rd, handler);
+		}
+	}
+
+	// Scorro le chiavi dell'oggetto principale come fa il costruttore di JSONObject, ma i ticket dell'array
+	// "issues" li passo all'handler invece di tenerli, e delle altre chiavi mi serve solo "total"
+	public static SearchPage readSearchPage(Reader rd, IssueHandler handler) throws JSONException {
+
+		JSONTokener tokener = new JSONTokener(rd);
+		int total = 0;
+		int issueCount = 0;
+
+		if (tokener.nextClean() != '{') {
+			throw tokener.syntaxError("A JSONObject text must begin with '{'");
+		}
+		char c = tokener.nextClean();
+		while (c != '}') {
+			if (c == 0) {
+				throw tokener.syntaxError("A JSONObject text must end with '}'");
+			}
+			tokener.back();
+			String key = tokener.nextValue().toString();
+			if (tokener.nextClean() != ':') {
+				throw tokener.syntaxError("Expected a ':' after a key");
+			}
+
+			if (key.equals(ISSUES)) {
+				issueCount += readIssues(tokener, handler);
+			} else {
+				Object value = tokener.nextValue();
+				if (key.equals(TOTAL)) {
+					total = Integer.parseInt(value.toString());
+				}
+			}
+
+			c = tokener.nextClean();
+			if (c == ',') {
+				c = tokener.nextClean();
+			} else if (c != '}') {
+				throw tokener.syntaxError("Expected a ',' or '}'");
+			}
+		}
+		return new SearchPage(total, issueCount);
+	}
+
+	private static int readIssues(JSONTokener tokener, IssueHandler handler) throws JSONException {
+
+		int issueCount = 0;
+
+		if (tokener.nextClean() != '[') {
+			throw tokener.syntaxError("A JSONArray text must start with '['");
+		}
+		char c = tokener.nextClean();
+		while (c != ']') {
+			if (c == 0) {
+				throw tokener.syntaxError("Expected a ',' or ']'");
+			}
+			tokener.back();
+			handler.handle((JSONObject) tokener.nextValue());
+			issueCount++;
+
+			c = tokener.nextClean();
+			if (c == ',') {
+				c = tokener.nextClean();
+			} else if (c != ']') {
+				throw tokener.syntaxError("Expected a ',' or ']'");
+			}
 		}
+		return issueCount;
 	}
 	
 	//Funzione creata per fixare delle versioni sbagliate presenti in Bookkeeper.
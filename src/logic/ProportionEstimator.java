@@ -0,0 +1,141 @@
+package logic;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ProportionEstimator {
+
+	// Strategie disponibili per stimare proportion dei ticket senza Affected Version
+	public enum Strategy {
+		// Tutti i ticket con ID precedente (proportion increment)
+		INCREMENT,
+		// Solo gli ultimi N ticket con ID precedente
+		MOVING_WINDOW,
+		// Un valore fissato da fuori, ad esempio calcolato su altri progetti
+		COLD_START
+	}
+
+	private final Strategy strategy;
+	private final int windowSize;
+	private final double coldStartValue;
+
+	// Map<ticketID, valore di proportion> dei ticket con Affected Version valide
+	private final Map<Integer, Double> proportionTickets = new TreeMap<>();
+
+	// ID ordinati e somme prefisse dei valori di proportion, ricostruiti solo dopo un nuovo inserimento
+	private int[] ticketIds = new int[0];
+	private double[] prefixSums = { 0 };
+	private boolean dirty;
+
+	private ProportionEstimator(Strategy strategy, int windowSize, double coldStartValue) {
+
+		this.strategy = strategy;
+		this.windowSize = windowSize;
+		this.coldStartValue = coldStartValue;
+	}
+
+	public static ProportionEstimator increment() {
+		return new ProportionEstimator(Strategy.INCREMENT, 0, 0);
+	}
+
+	public static ProportionEstimator movingWindow(int windowSize) {
+
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("La finestra deve contenere almeno un ticket: " + windowSize);
+		}
+		return new ProportionEstimator(Strategy.MOVING_WINDOW, windowSize, 0);
+	}
+
+	public static ProportionEstimator coldStart(double coldStartValue) {
+		return new ProportionEstimator(Strategy.COLD_START, 0, coldStartValue);
+	}
+
+	// Crea lo stimatore a partire da una descrizione testuale: "increment", "window:N" o "coldstart:P"
+	public static ProportionEstimator fromDescription(String description) {
+
+		String[] parts = description.trim().split(":");
+		try {
+			if (parts[0].equalsIgnoreCase("increment") && parts.length == 1) {
+				return increment();
+			}
+			if (parts[0].equalsIgnoreCase("window") && parts.length == 2) {
+				return movingWindow(Integer.parseInt(parts[1].trim()));
+			}
+			if (parts[0].equalsIgnoreCase("coldstart") && parts.length == 2) {
+				return coldStart(Double.parseDouble(parts[1].trim()));
+			}
+		} catch (NumberFormatException e) {
+			throw invalidDescription(description, e);
+		}
+		throw invalidDescription(description, null);
+	}
+
+	private static IllegalArgumentException invalidDescription(String description, Throwable cause) {
+		return new IllegalArgumentException("Strategia di proportion non valida: " + description
+				+ " (attesa increment | window:N | coldstart:P)", cause);
+	}
+
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	// Aggiunge il valore di proportion calcolato per un ticket. Se il ticket è già presente tengo il primo valore.
+	public void addTicket(int ticketID, double proportion) {
+
+		if (proportionTickets.putIfAbsent(ticketID, proportion) == null) {
+			dirty = true;
+		}
+	}
+
+	// Numero di ticket con un valore di proportion
+	public int size() {
+		return proportionTickets.size();
+	}
+
+	// Stima di proportion per il ticket passato, usando solo i ticket con ID precedente.
+	// Come il calcolo originale ritorna numero dei ticket / somma dei loro valori, o 0 se non ce ne sono.
+	public double estimate(int ticketID) {
+
+		if (strategy == Strategy.COLD_START) {
+			return coldStartValue;
+		}
+
+		rebuildIfDirty();
+
+		// Numero di ticket con ID minore di quello passato (ricerca binaria)
+		int position = Arrays.binarySearch(ticketIds, ticketID);
+		int previousTickets = position >= 0 ? position : -position - 1;
+
+		int firstTicket = 0;
+		if (strategy == Strategy.MOVING_WINDOW) {
+			firstTicket = Math.max(0, previousTickets - windowSize);
+		}
+
+		int count = previousTickets - firstTicket;
+		if (count == 0) {
+			return 0;
+		}
+		return count / (prefixSums[previousTickets] - prefixSums[firstTicket]);
+	}
+
+	// Le somme vengono accumulate in ordine crescente di ID, come nel ciclo originale, così il risultato è identico
+	private void rebuildIfDirty() {
+
+		if (!dirty) {
+			return;
+		}
+
+		ticketIds = new int[proportionTickets.size()];
+		prefixSums = new double[proportionTickets.size() + 1];
+
+		int i = 0;
+		for (Map.Entry<Integer, Double> entry : proportionTickets.entrySet()) {
+			ticketIds[i] = entry.getKey();
+			prefixSums[i + 1] = prefixSums[i] + entry.getValue();
+			i++;
+		}
+		dirty = false;
+	}
+
+}
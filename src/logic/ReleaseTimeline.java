@@ -0,0 +1,156 @@
+package logic;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Multimap;
+
+public class ReleaseTimeline {
+
+	// Date delle release in giorni dall'epoch, in ordine crescente e senza duplicati
+	private final long[] releaseDays;
+
+	// Indice della versione associato a ciascuna data, nella stessa posizione di releaseDays
+	private final int[] versionIndexes;
+
+	// Nomi delle release uscite in ciascuna data, nell'ordine in cui arrivano da Jira
+	private final List<List<String>> versionNames;
+
+	// Map<nome della release, indice della versione>
+	private final Map<String, Integer> versionIndexByName = new HashMap<>();
+
+	// Costruisce la timeline a partire dalla Multimap di MainActivity.getVersionAndReleaseDate, fatta così:
+	// <data release, nome release (una o più release nella stessa data), indice versione>.
+	// L'indice è sempre l'ultimo valore della data, tutti i precedenti sono nomi di release.
+	public ReleaseTimeline(Multimap<LocalDate, String> versionListWithReleaseDateAndIndex) {
+
+		int size = versionListWithReleaseDateAndIndex.keySet().size();
+		releaseDays = new long[size];
+		versionIndexes = new int[size];
+		versionNames = new ArrayList<>(size);
+
+		int position = 0;
+		for (LocalDate releaseDate : versionListWithReleaseDateAndIndex.keySet()) {
+
+			List<String> values = new ArrayList<>(versionListWithReleaseDateAndIndex.get(releaseDate));
+			int versionIndex = Integer.parseInt(values.get(values.size() - 1));
+			List<String> names = Collections.unmodifiableList(new ArrayList<>(values.subList(0, values.size() - 1)));
+
+			releaseDays[position] = releaseDate.toEpochDay();
+			versionIndexes[position] = versionIndex;
+			versionNames.add(names);
+			for (String name : names) {
+				versionIndexByName.putIfAbsent(name, versionIndex);
+			}
+			position++;
+		}
+	}
+
+	// Numero di date di release
+	public int size() {
+		return releaseDays.length;
+	}
+
+	// Indice della prima versione rilasciata dopo la data passata, o dell'ultima versione se la data
+	// è successiva a tutte le release. Ritorna 0 se non ci sono release.
+	public int getVersionIndexAfter(LocalDate date) {
+		return versionIndexAtOrLast(firstPositionFrom(date.toEpochDay() + 1));
+	}
+
+	// Data da cui i commit appartengono ad una versione successiva a latestVersion (quella di rilascio di
+	// latestVersion, come in getVersionIndexAfter), null se nessun commit va oltre latestVersion
+	public LocalDate getClosingDate(int latestVersion) {
+
+		int position = Arrays.binarySearch(versionIndexes, latestVersion);
+		if (position < 0) {
+			position = -position - 2;
+		}
+		if (position >= releaseDays.length - 1) {
+			return null;
+		}
+		return LocalDate.ofEpochDay(releaseDays[Math.max(position, 0)]);
+	}
+
+	// Come getVersionIndexAfter, per una sequenza di date in ordine (anche decrescente, come i commit del log):
+	// la posizione nella timeline viene spostata a partire da quella della data precedente invece di essere
+	// cercata ogni volta. Una data fuori ordine sposta la posizione indietro, quindi il risultato non cambia.
+	public VersionSweep newVersionSweep() {
+		return new VersionSweep();
+	}
+
+	public final class VersionSweep {
+
+		// Prima posizione con data successiva all'ultima data passata
+		private int position = releaseDays.length;
+
+		private VersionSweep() {
+		}
+
+		public int getVersionIndexAfter(LocalDate date) {
+
+			long epochDay = date.toEpochDay();
+			while (position > 0 && releaseDays[position - 1] > epochDay) {
+				position--;
+			}
+			while (position < releaseDays.length && releaseDays[position] <= epochDay) {
+				position++;
+			}
+			return versionIndexAtOrLast(position);
+		}
+	}
+
+	// Indice della prima versione rilasciata nella data passata o dopo, o dell'ultima versione se la data
+	// è successiva a tutte le release. Ritorna 0 se non ci sono release.
+	public int getVersionIndexFrom(LocalDate date) {
+		return versionIndexAtOrLast(firstPositionFrom(date.toEpochDay()));
+	}
+
+	// Indice della versione con il nome passato, 0 se il nome non corrisponde a nessuna release con data
+	public int getVersionIndex(String versionName) {
+
+		Integer versionIndex = versionIndexByName.get(versionName);
+		return versionIndex == null ? 0 : versionIndex;
+	}
+
+	// Data di rilascio della versione, null se l'indice non esiste
+	public LocalDate getReleaseDate(int versionIndex) {
+
+		int position = positionOf(versionIndex);
+		return position < 0 ? null : LocalDate.ofEpochDay(releaseDays[position]);
+	}
+
+	// Nomi delle release uscite con l'indice di versione passato, lista vuota se l'indice non esiste
+	public List<String> getVersionNames(int versionIndex) {
+
+		int position = positionOf(versionIndex);
+		return position < 0 ? Collections.<String>emptyList() : versionNames.get(position);
+	}
+
+	// Prima posizione con data >= epochDay (ricerca binaria), size() se non ce ne sono
+	private int firstPositionFrom(long epochDay) {
+
+		int position = Arrays.binarySearch(releaseDays, epochDay);
+		return position >= 0 ? position : -position - 1;
+	}
+
+	private int versionIndexAtOrLast(int position) {
+
+		if (releaseDays.length == 0) {
+			return 0;
+		}
+		return versionIndexes[Math.min(position, releaseDays.length - 1)];
+	}
+
+	// Gli indici crescono con la data, quindi posso cercarli per bisezione
+	private int positionOf(int versionIndex) {
+
+		int position = Arrays.binarySearch(versionIndexes, versionIndex);
+		return position >= 0 ? position : -1;
+	}
+
+}
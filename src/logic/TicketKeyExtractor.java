@@ -0,0 +1,85 @@
+package logic;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class TicketKeyExtractor {
+
+	// Chiave del progetto, es. "OPENJPA", usata per riconoscere i token "OPENJPA-<id>"
+	private final String projectName;
+
+	// Oltre 9 cifre l'ID non entra in un int e non può corrispondere a nessun ticket
+	private static final int MAX_ID_DIGITS = 9;
+
+	public TicketKeyExtractor(String projectName) {
+
+		this.projectName = projectName;
+	}
+
+	public String getProjectName() {
+		return projectName;
+	}
+
+	// Scorre il messaggio di commit una sola volta e ritorna, nell'ordine in cui compaiono, gli ID
+	// di tutti i token "NomeProgetto-IssueID". Riproduce la semantica della vecchia espressione
+	// "\bNomeProgetto-IssueID\b" con CASE_INSENSITIVE: confine di parola prima del nome del progetto
+	// e dopo l'ID, confronto case insensitive solo sui caratteri ASCII, nessuno zero iniziale.
+	public Set<Integer> extractTicketIds(String commitMessage) {
+
+		Set<Integer> ticketIds = new LinkedHashSet<>();
+		int keyLength = projectName.length();
+		int messageLength = commitMessage.length();
+
+		for (int i = 0; i + keyLength < messageLength; i++) {
+
+			// Il token deve iniziare su un confine di parola, seguito da "NomeProgetto-"
+			if ((i > 0 && isWordChar(commitMessage.charAt(i - 1))) || !matchesProjectName(commitMessage, i)
+					|| commitMessage.charAt(i + keyLength) != '-') {
+				continue;
+			}
+
+			// Prendo la sequenza di cifre dopo il trattino
+			int start = i + keyLength + 1;
+			int end = start;
+			while (end < messageLength && isAsciiDigit(commitMessage.charAt(end))) {
+				end++;
+			}
+
+			// Scarto i token senza cifre, con zeri iniziali, troppo lunghi o non chiusi da un confine di parola
+			if (end == start || (commitMessage.charAt(start) == '0' && end - start > 1) || end - start > MAX_ID_DIGITS
+					|| (end < messageLength && isWordChar(commitMessage.charAt(end)))) {
+				continue;
+			}
+
+			ticketIds.add(Integer.valueOf(commitMessage.substring(start, end)));
+			i = end - 1;
+		}
+
+		return ticketIds;
+	}
+
+	// Confronto case insensitive limitato ai caratteri ASCII, come Pattern.CASE_INSENSITIVE senza UNICODE_CASE
+	private boolean matchesProjectName(String commitMessage, int offset) {
+
+		for (int j = 0; j < projectName.length(); j++) {
+			if (toAsciiLowerCase(commitMessage.charAt(offset + j)) != toAsciiLowerCase(projectName.charAt(j))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static char toAsciiLowerCase(char c) {
+		return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	private static boolean isAsciiDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	// Stessa definizione di "carattere di parola" usata da \b nelle regex Java
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+
+}
@@ -1,12 +1,21 @@
 package machine_learning;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.IntPredicate;
 
+import main.DatasetIndex;
 import main.LoggerClass;
 
 public class ArffBuilder {
@@ -44,17 +53,58 @@ public class ArffBuilder {
 	}
 	
 	
+	// Copia nel file .arff le righe delle versioni scelte, nell'ordine del csv, leggendo solo i loro byte
+	// grazie all'indice. Ritorna il numero di righe ed il numero di classi buggy, presi dall'indice.
+	private static List<Integer> appendVersionsFromIndex(FileWriter csvMaker, String projectName, DatasetIndex datasetIndex,
+			IntPredicate versionFilter) throws IOException {
+
+		int fileCount = 0;
+		int defectiveCount = 0;
+
+		try (FileChannel dataset = FileChannel.open(DatasetIndex.getDatasetFile(projectName), StandardOpenOption.READ)) {
+
+			for (DatasetIndex.VersionRange range : datasetIndex.getRanges()) {
+				if (!versionFilter.test(range.getVersion())) {
+					continue;
+				}
+
+				ByteBuffer rows = ByteBuffer.allocate(range.getLength());
+				while (rows.hasRemaining()) {
+					if (dataset.read(rows, range.getOffset() + rows.position()) < 0) {
+						throw new IOException("L'indice del dataset di " + projectName + " non corrisponde al csv");
+					}
+				}
+
+				try (BufferedReader reader = new BufferedReader(
+						new InputStreamReader(new ByteArrayInputStream(rows.array()), Charset.defaultCharset()))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						appendToCSV(csvMaker, line);
+					}
+				}
+				fileCount += range.getRows();
+				defectiveCount += range.getDefective();
+			}
+		}
+		return Arrays.asList(fileCount, defectiveCount);
+	}
+
 	//Mi costruisco il file .arff per il training set. Ritorna una lista di interi che mi servirà in FinalEvaluation.
 	public static List<Integer> buildTrainingSetWalkForward(String projectName, int trainingLimit) throws IOException {
+		return buildTrainingSetWalkForward(projectName, trainingLimit, projectName + TRAINING);
+	}
+
+	//Come sopra, ma scrivendo il training set nel file indicato, così fold diversi possono essere costruiti insieme.
+	public static List<Integer> buildTrainingSetWalkForward(String projectName, int trainingLimit, String arffFile) throws IOException {
 
 		int fileCount = 0;
 		int defectiveCount = 0;
 
 		ArrayList<Integer> statsHolder = new ArrayList<>();
 		
-		LoggerClass.infoLog("Sto costruendo il training set, applicando Walk Forward, per il progetto "+projectName+" all'iterazione "+ trainingLimit);
+		LoggerClass.infoLog("Sto costruendo il training set, applicando Walk Forward, per il progetto {} all'iterazione {}", projectName, trainingLimit);
 		// Creo il file .arff con il nome del progetto in questione 
-		try (FileWriter csvMaker = new FileWriter(projectName + TRAINING)) {
+		try (FileWriter csvMaker = new FileWriter(arffFile)) {
 
 			// Aggiungo le dichiarazioni degli attributi, del progetto e dei dati
 			csvMaker.append("@relation " + projectName + "\n\n");
@@ -70,7 +120,15 @@ public class ArffBuilder {
 			csvMaker.append("@attribute Buggy {Yes, No}\n\n");
 			csvMaker.append("@data\n");
 
-			// Prendo il dataset creato da DatasetCreator
+			// Se c'è l'indice del dataset leggo solo le versioni fino a trainingLimit, e prendo da lì le statistiche
+			DatasetIndex datasetIndex = DatasetIndex.loadFor(projectName);
+			if (datasetIndex != null) {
+				statsHolder.addAll(appendVersionsFromIndex(csvMaker, projectName, datasetIndex, version -> version <= trainingLimit));
+				csvMaker.flush();
+				return statsHolder;
+			}
+
+			// Altrimenti prendo il dataset creato da DatasetCreator e lo leggo tutto
 			try (BufferedReader reader = new BufferedReader(new FileReader("csv/" + projectName + "_datasetDeliverableBuggyness.csv"))){ 
 
 				//Leggo e salto la prima riga, che contiene solo i nomi delle colonne
@@ -104,22 +162,27 @@ public class ArffBuilder {
 
 	//Mi costruisco il file .arff per il testing set. Ritorna una lista di interi che mi servirà in FinalEvaluation.
 	public static List<Integer> buildTestingSetWalkForward(String projectName, int testing) throws IOException {
+		return buildTestingSetWalkForward(projectName, testing, projectName + TESTING);
+	}
+
+	//Come sopra, ma scrivendo il testing set nel file indicato, così fold diversi possono essere costruiti insieme.
+	public static List<Integer> buildTestingSetWalkForward(String projectName, int testing, String arffFile) throws IOException {
 
 		int fileCount = 0;
 		int defectiveCount = 0;
 		ArrayList<Integer> statsHolder = new ArrayList<>();
 		
-		LoggerClass.infoLog("Sto costruendo il testing set, applicando Walk Forward, per il progetto "+projectName+" all'iterazione "+testing);
+		LoggerClass.infoLog("Sto costruendo il testing set, applicando Walk Forward, per il progetto {} all'iterazione {}", projectName, testing);
 		
 		// Creo il file .arff con il nome del progetto preso in esame
-		try (FileWriter csvWriter = new FileWriter(projectName + TESTING)) {
+		try (FileWriter csvWriter = new FileWriter(arffFile)) {
 
 			// Aggiungo le dichiarazioni degli attributi, del progetto e dei dati
 			csvWriter.append("@relation " + projectName + "\n\n");
 			csvWriter.append("@attribute LOC_Touched real\n");
 			csvWriter.append("@attribute NumberRevisions real\n");
 			csvWriter.append("@attribute NumberBugFix real\n");
-			csvWriter.append("@attribute LOC_Addedr real\n");
+			csvWriter.append("@attribute LOC_Added real\n");
 			csvWriter.append("@attribute MAX_LOC_Added real\n");
 			csvWriter.append("@attribute Chg_Set_Size real\n");
 			csvWriter.append("@attribute Max_Chg_Set real\n");
@@ -128,7 +191,15 @@ public class ArffBuilder {
 			csvWriter.append("@attribute Buggy {Yes, No}\n\n");
 			csvWriter.append("@data\n");
 
-			// Prendo il dataset creato da DatasetCreator
+			// Se c'è l'indice del dataset leggo solo la versione di testing, e prendo da lì le statistiche
+			DatasetIndex datasetIndex = DatasetIndex.loadFor(projectName);
+			if (datasetIndex != null) {
+				statsHolder.addAll(appendVersionsFromIndex(csvWriter, projectName, datasetIndex, version -> version == testing));
+				csvWriter.flush();
+				return statsHolder;
+			}
+
+			// Altrimenti prendo il dataset creato da DatasetCreator e lo leggo tutto
 			try (BufferedReader reader = new BufferedReader(new FileReader("csv/" + projectName + "_datasetDeliverableBuggyness.csv"))){  
 
 				// Leggo la prima riga, che contiene solo il nome delle colonne
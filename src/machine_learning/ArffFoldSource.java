@@ -0,0 +1,69 @@
+package machine_learning;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import main.RunMetrics;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+
+// Fold costruiti come sempre: ArffBuilder scrive i file .arff dal csv del dataset e Weka li rilegge.
+// Ogni fold usa file propri (PROGETTO_fold_training.arff), cancellati appena letti, così più fold
+// possono essere costruiti insieme.
+public class ArffFoldSource implements FoldSource {
+
+	//Stringhe utili per i filenames
+	private static final String TRAINING = "_training.arff";
+	private static final String TESTING = "_testing.arff";
+
+	private final String projectName;
+	private final int maxVersions;
+
+	public ArffFoldSource(String projectName, int maxVersions) {
+
+		this.projectName = projectName;
+		this.maxVersions = maxVersions;
+	}
+
+	@Override
+	public String getProjectName() {
+		return projectName;
+	}
+
+	@Override
+	public int getMaxVersions() {
+		return maxVersions;
+	}
+
+	@Override
+	public Fold getFold(int trainingLimit) throws Exception {
+
+		String trainingFile = projectName + "_" + trainingLimit + TRAINING;
+		String testingFile = projectName + "_" + trainingLimit + TESTING;
+
+		try {
+			return RunMetrics.time("arff_build", () -> buildFold(trainingLimit, trainingFile, testingFile));
+		} finally {
+			// Cancello i file creati per il fold
+			Files.deleteIfExists(Paths.get(testingFile));
+			Files.deleteIfExists(Paths.get(trainingFile));
+		}
+	}
+
+	private Fold buildFold(int trainingLimit, String trainingFile, String testingFile) throws Exception {
+
+		// Mi creo i file .arff per il training ed il testing e prendo il numero di istanze
+		// totali ed il numero di istanze buggy, date in output dal metodo.
+		List<Integer> trainingStats = ArffBuilder.buildTrainingSetWalkForward(projectName, trainingLimit, trainingFile);
+		List<Integer> testingStats = ArffBuilder.buildTestingSetWalkForward(projectName, trainingLimit + 1, testingFile);
+
+		// Prendo i file .arff appena creati per darli in input a Weka
+		Instances trainingSet = new DataSource(trainingFile).getDataSet();
+		Instances testingSet = new DataSource(testingFile).getDataSet();
+		RunMetrics.count("instances", trainingSet.numInstances() + (long) testingSet.numInstances());
+
+		return new Fold(trainingLimit, trainingSet, testingSet, trainingStats, testingStats);
+	}
+
+}
@@ -0,0 +1,129 @@
+package machine_learning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import logic.MetricStore;
+import main.DatasetCreator;
+import main.RunMetrics;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+// Fold del walk forward presi direttamente dalle metriche in memoria, senza passare da csv e .arff.
+// Le righe sono nello stesso ordine del csv scritto da DatasetCreator e hanno gli stessi valori,
+// quindi i fold sono uguali a quelli letti dai file.
+public class DatasetInstances implements FoldSource {
+
+	private static final String[] ATTRIBUTES = { "LOC_Touched", "NumberRevisions", "NumberBugFix", "LOC_Added",
+			"MAX_LOC_Added", "Chg_Set_Size", "Max_Chg_Set", "AVG_Chg_Set", "Avg_LOC_Added" };
+	private static final String BUGGY = "Yes";
+	private static final String NOT_BUGGY = "No";
+
+	private final String projectName;
+	private final int maxVersions;
+
+	// Versione e valori (metriche e classe) di ogni riga del dataset, nell'ordine del csv
+	private final int[] rowVersions;
+	private final double[][] rowValues;
+
+	// Copia le righe dello store in ingresso, che può quindi essere modificato dopo
+	public DatasetInstances(String projectName, MetricStore metricStore, int latestVersion) {
+
+		this.projectName = projectName;
+		this.maxVersions = latestVersion;
+
+		List<Integer> versions = DatasetCreator.getDatasetVersions(metricStore, latestVersion);
+		DatasetCreator.PathOrder pathOrder = new DatasetCreator.PathOrder(metricStore);
+
+		List<double[]> values = new ArrayList<>();
+		List<Integer> valueVersions = new ArrayList<>();
+		for (int version : versions) {
+			for (int fileId : pathOrder.getFileIds(version)) {
+				values.add(getRowValues(metricStore, version, fileId));
+				valueVersions.add(version);
+			}
+		}
+
+		rowValues = values.toArray(new double[values.size()][]);
+		rowVersions = new int[valueVersions.size()];
+		for (int row = 0; row < rowVersions.length; row++) {
+			rowVersions[row] = valueVersions.get(row);
+		}
+	}
+
+	// Gli attributi vengono creati per ogni Instances, perché Weka ne imposta l'indice e i fold possono essere
+	// costruiti da thread diversi
+	private static ArrayList<Attribute> getAttributes() {
+
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (String attribute : ATTRIBUTES) {
+			attributes.add(new Attribute(attribute));
+		}
+		attributes.add(new Attribute("Buggy", Arrays.asList(BUGGY, NOT_BUGGY)));
+		return attributes;
+	}
+
+	// Stesse colonne del csv senza versione e nome del file, con le medie calcolate allo stesso modo
+	private static double[] getRowValues(MetricStore metricStore, int version, int fileId) {
+
+		int revisions = metricStore.getNumberRevisions(version, fileId);
+		int chgSetSize = metricStore.getChgSetSize(version, fileId);
+		int locAdded = metricStore.getLocAdded(version, fileId);
+
+		return new double[] { metricStore.getLocTouched(version, fileId), revisions,
+				metricStore.getNumberBugFix(version, fileId), locAdded, metricStore.getMaxLocAdded(version, fileId),
+				chgSetSize, metricStore.getMaxChgSet(version, fileId), revisions == 0 ? 0 : chgSetSize / revisions,
+				revisions == 0 ? 0 : locAdded / revisions, metricStore.isBuggy(version, fileId) ? 0 : 1 };
+	}
+
+	@Override
+	public String getProjectName() {
+		return projectName;
+	}
+
+	@Override
+	public int getMaxVersions() {
+		return maxVersions;
+	}
+
+	@Override
+	public Fold getFold(int trainingLimit) {
+
+		return RunMetrics.time("fold_build", () -> {
+
+			List<Integer> trainingStats = new ArrayList<>();
+			List<Integer> testingStats = new ArrayList<>();
+			Instances trainingSet = getInstances(version -> version <= trainingLimit, trainingStats);
+			Instances testingSet = getInstances(version -> version == trainingLimit + 1, testingStats);
+			RunMetrics.count("instances", trainingSet.numInstances() + (long) testingSet.numInstances());
+
+			return new Fold(trainingLimit, trainingSet, testingSet, trainingStats, testingStats);
+		});
+	}
+
+	// Istanze delle righe con la versione accettata dal filtro; in stats metto il numero di righe e di righe buggy
+	private Instances getInstances(IntPredicate versionFilter, List<Integer> stats) {
+
+		int fileCount = 0;
+		int defectiveCount = 0;
+		Instances instances = new Instances(projectName, getAttributes(), 0);
+
+		for (int row = 0; row < rowVersions.length; row++) {
+			if (versionFilter.test(rowVersions[row])) {
+				instances.add(new DenseInstance(1.0, rowValues[row].clone()));
+				fileCount++;
+				if (rowValues[row][ATTRIBUTES.length] == 0) {
+					defectiveCount++;
+				}
+			}
+		}
+
+		stats.add(fileCount);
+		stats.add(defectiveCount);
+		return instances;
+	}
+
+}
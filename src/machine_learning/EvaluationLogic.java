@@ -1,22 +1,20 @@
 package machine_learning;
 
 import java.io.FileWriter;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import main.LoggerClass;
+import main.RunMetrics;
 import weka.core.Instances;
+import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import weka.classifiers.trees.RandomForest;
 import weka.classifiers.bayes.NaiveBayes;
-import weka.core.converters.ConverterUtils.DataSource;
+import weka.classifiers.bayes.NaiveBayesUpdateable;
 import weka.classifiers.lazy.IBk;
 
 public class EvaluationLogic {
-	
-	//Stringhe utili per i filenames
-	private static final String TRAINING = "_training.arff";
-	private static final String TESTING = "_testing.arff";
 
 	public static void main(String[] args) throws Exception{
 
@@ -29,73 +27,101 @@ public class EvaluationLogic {
 		LoggerClass.setupLogger();
 		LoggerClass.infoLog("Avvio il programma per il calcolo delle metriche...");
 
-		//Per ciascun progetto
+		//Per ciascun progetto: i fold vengono letti dai file .arff costruiti a partire dal csv del dataset
+		List<FoldSource> folds = new ArrayList<>();
 		for (int i = 0; i < projects.length; i++) {
+			folds.add(new ArffFoldSource(projects[i], maxVersions[i]));
+		}
+
+		evaluateProjects(folds);
+		RunMetrics.write();
+	}
+
+	// Valuta i tre classificatori su ogni fold del walk forward dei progetti, in parallelo, e scrive il risultato
+	// di ciascun progetto in csv/<progetto>_metrics.csv, nell'ordine dei fold
+	public static void evaluateProjects(List<? extends FoldSource> projects) throws Exception {
+
+		List<List<String>> results;
+		if (WalkForward.isIncrementalTraining()) {
+			// Ogni progetto si porta dietro i suoi classificatori da un fold all'altro: NaiveBayes e IBk
+			// vengono solo aggiornati con la nuova release, RandomForest viene addestrato di nuovo
+			results = WalkForward.evaluateFoldsInOrder(projects, () -> {
+				WalkForwardModel modelIBk = new WalkForwardModel(IBk::new);
+				WalkForwardModel modelRandomForest = new WalkForwardModel(RandomForest::new);
+				WalkForwardModel modelNaiveBayes = new WalkForwardModel(NaiveBayesUpdateable::new);
+				return (folds, j) -> evaluateFold(folds, j, modelIBk, modelRandomForest, modelNaiveBayes);
+			});
+		} else {
+			results = WalkForward.evaluateFolds(projects, (folds, j) -> evaluateFold(folds, j,
+					new WalkForwardModel(IBk::new), new WalkForwardModel(RandomForest::new), new WalkForwardModel(NaiveBayes::new)));
+		}
+
+		for (int i = 0; i < projects.size(); i++) {
 
 			//Apro il file di output dal calcolo delle metriche
-			try (FileWriter csvMaker = new FileWriter("csv/"+projects[i]+ "_metrics.csv")) {
+			try (FileWriter csvMaker = new FileWriter("csv/" + projects.get(i).getProjectName() + "_metrics.csv")) {
 
 				// Scrivo la prima riga del file in output
 				csvMaker.append("Dataset_Name,N°TrainingRelease,Classifier,Precision,Recall,AUC,Kappa\n");
 
 				// Itero sulla singola versione, applicando così Walk Forward
-				for (int j = 1; j < maxVersions[i]; j++) {
-
-					//Creo il file .arff per il training, fino alla versione n-esima del progetto in questione
-					//Itero dalla prima all'ultima, una alla volta.
-					
-					ArffBuilder.buildTrainingSetWalkForward(projects[i], j);
-
-					//Creo il file .arff per il testing, fino alla versione n+1, secondo la tecnica Walk Forward
-					ArffBuilder.buildTestingSetWalkForward(projects[i] ,j+1);
-
-					// Prendo i file .arff appena creati per darli in input a Weka
-					DataSource sourceForTraining = new DataSource(projects[i] + TRAINING);
-					Instances trainingSet = sourceForTraining.getDataSet();
-					DataSource sourceForTesting = new DataSource(projects[i] + TESTING);
-					Instances testingSet = sourceForTesting.getDataSet();
-
-					// Setto il numero di attributi per ciascuno
-					// dei due dataset, -1 perché l'ultimo è proprio
-					// l'oggetto della predizione
-					int attributesNumber = trainingSet.numAttributes();
-					trainingSet.setClassIndex(attributesNumber - 1);
-					testingSet.setClassIndex(attributesNumber - 1);
-					
-					LoggerClass.infoLog("Sto settando i classificatori...");
-					
-					// Faccio la new dei tre classificatori presi in esame
-					IBk classifierIBk = new IBk();
-					RandomForest classifierRandomForest = new RandomForest();
-					NaiveBayes classifierNaiveBayes = new NaiveBayes();
-
-					// Dò al classificatore il training set
-					classifierIBk.buildClassifier(trainingSet);
-					classifierRandomForest.buildClassifier(trainingSet);
-					classifierNaiveBayes.buildClassifier(trainingSet);
-
-					// Creo un oggetto Evaluation con i dati di training 
-					Evaluation evaluate = new Evaluation(trainingSet);	
-					
-					
-					LoggerClass.infoLog("Sto valutando il modello con i classificatori ed il testing set");
-					// Valuto ciascun modello con ogni classificatore ed i dati di testing
-					// Scrivo poi il risultato sul file in output.
-					evaluate.evaluateModel(classifierNaiveBayes, testingSet); 
-					csvMaker.append(projects[i] + "," + j + ",NaiveBayes," + evaluate.precision(0) + "," + evaluate.recall(0) +  "," + evaluate.areaUnderROC(0) + "," + evaluate.kappa() + "\n");
-					evaluate.evaluateModel(classifierRandomForest, testingSet); 
-					csvMaker.append(projects[i] + "," + j + ",RandomForest," + evaluate.precision(0) + "," + evaluate.recall(0) +  "," + evaluate.areaUnderROC(0) + "," + evaluate.kappa() + "\n");
-					evaluate.evaluateModel(classifierIBk, testingSet); 
-					csvMaker.append(projects[i] + "," + j + ",IBk," + evaluate.precision(0) + "," + evaluate.recall(0) +  "," + evaluate.areaUnderROC(0) + "," + evaluate.kappa() + "\n");
-
+				for (String foldResult : results.get(i)) {
+					csvMaker.append(foldResult);
 				}
-
-				// Cancello il file creato in precedenza
-				Files.deleteIfExists(Paths.get(projects[i] + TESTING));
-				Files.deleteIfExists(Paths.get(projects[i] + TRAINING));
 				csvMaker.flush();
 			}
 		}
 	}
 
+	// Valuta i tre classificatori su un fold e ritorna le righe del file in output
+	private static String evaluateFold(FoldSource folds, int j, WalkForwardModel modelIBk,
+			WalkForwardModel modelRandomForest, WalkForwardModel modelNaiveBayes) throws Exception {
+
+		String projectName = folds.getProjectName();
+		StringBuilder foldResult = new StringBuilder();
+
+		//Prendo il training, fino alla versione n-esima del progetto in questione,
+		//ed il testing, fino alla versione n+1, secondo la tecnica Walk Forward.
+		Fold fold = folds.getFold(j);
+		Instances trainingSet = fold.getTrainingSet();
+		Instances testingSet = fold.getTestingSet();
+
+		// Setto il numero di attributi per ciascuno
+		// dei due dataset, -1 perché l'ultimo è proprio
+		// l'oggetto della predizione
+		int attributesNumber = trainingSet.numAttributes();
+		trainingSet.setClassIndex(attributesNumber - 1);
+		testingSet.setClassIndex(attributesNumber - 1);
+		
+		LoggerClass.infoLog("Sto settando i classificatori...");
+		
+		// Dò ai tre classificatori presi in esame il training set, se non sono già stati addestrati sugli stessi
+		// dati in un run precedente o, con l'addestramento incrementale, sul fold precedente
+		Classifier classifierIBk = modelIBk.train(fold);
+		Classifier classifierRandomForest = modelRandomForest.train(fold);
+		Classifier classifierNaiveBayes = modelNaiveBayes.train(fold);
+
+		// Creo un oggetto Evaluation con i dati di training 
+		Evaluation evaluate = new Evaluation(trainingSet);	
+		
+		
+		LoggerClass.infoLog("Sto valutando il modello con i classificatori ed il testing set");
+		// Valuto ciascun modello con ogni classificatore ed i dati di testing
+		// Scrivo poi il risultato sul file in output.
+		evaluateModel(evaluate, classifierNaiveBayes, testingSet);
+		foldResult.append(projectName + "," + j + ",NaiveBayes," + evaluate.precision(0) + "," + evaluate.recall(0) +  "," + evaluate.areaUnderROC(0) + "," + evaluate.kappa() + "\n");
+		evaluateModel(evaluate, classifierRandomForest, testingSet);
+		foldResult.append(projectName + "," + j + ",RandomForest," + evaluate.precision(0) + "," + evaluate.recall(0) +  "," + evaluate.areaUnderROC(0) + "," + evaluate.kappa() + "\n");
+		evaluateModel(evaluate, classifierIBk, testingSet);
+		foldResult.append(projectName + "," + j + ",IBk," + evaluate.precision(0) + "," + evaluate.recall(0) +  "," + evaluate.areaUnderROC(0) + "," + evaluate.kappa() + "\n");
+
+		return foldResult.toString();
+	}
+
+	// Valuta il classificatore sul testing set, misurandone la durata
+	private static void evaluateModel(Evaluation evaluate, Classifier classifier, Instances testingSet) throws Exception {
+
+		RunMetrics.time("evaluate", () -> evaluate.evaluateModel(classifier, testingSet));
+	}
+
 }
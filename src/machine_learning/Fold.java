@@ -0,0 +1,47 @@
+package machine_learning;
+
+import java.util.List;
+
+import weka.core.Instances;
+
+// Un'iterazione del walk forward: training set con le versioni fino a trainingLimit, testing set con la versione
+// successiva, e per ciascuno le statistiche [numero di file, numero di file buggy] come in ArffBuilder
+public class Fold {
+
+	private final int trainingLimit;
+	private final Instances trainingSet;
+	private final Instances testingSet;
+	private final List<Integer> trainingStats;
+	private final List<Integer> testingStats;
+
+	public Fold(int trainingLimit, Instances trainingSet, Instances testingSet, List<Integer> trainingStats,
+			List<Integer> testingStats) {
+
+		this.trainingLimit = trainingLimit;
+		this.trainingSet = trainingSet;
+		this.testingSet = testingSet;
+		this.trainingStats = trainingStats;
+		this.testingStats = testingStats;
+	}
+
+	public int getTrainingLimit() {
+		return trainingLimit;
+	}
+
+	public Instances getTrainingSet() {
+		return trainingSet;
+	}
+
+	public Instances getTestingSet() {
+		return testingSet;
+	}
+
+	public List<Integer> getTrainingStats() {
+		return trainingStats;
+	}
+
+	public List<Integer> getTestingStats() {
+		return testingStats;
+	}
+
+}
@@ -0,0 +1,14 @@
+package machine_learning;
+
+// Fornisce i fold del walk forward di un progetto, dai file .arff o direttamente dalla memoria
+public interface FoldSource {
+
+	String getProjectName();
+
+	// Numero di versioni del progetto: i fold vanno da 1 a getMaxVersions() - 1
+	int getMaxVersions();
+
+	// Fold con il training set fino alla versione trainingLimit ed il testing set sulla versione trainingLimit + 1
+	Fold getFold(int trainingLimit) throws Exception;
+
+}
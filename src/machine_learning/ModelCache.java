@@ -0,0 +1,211 @@
+package machine_learning;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import main.LoggerClass;
+import main.RunMetrics;
+import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.OptionHandler;
+import weka.core.SerializationHelper;
+import weka.core.Utils;
+
+// Cache su disco dei classificatori già addestrati. La chiave è lo sha256 del training set (header, valori e pesi
+// delle istanze) e del classificatore con le sue opzioni: per un FilteredClassifier le opzioni comprendono anche
+// il filtro di sampling ed il classificatore interno. Un run ripetuto con gli stessi dati, ad esempio dopo un
+// crash o dopo una modifica al solo calcolo delle metriche, legge i modelli invece di addestrarli di nuovo.
+// Quando la cartella supera la dimensione massima vengono cancellati i modelli usati meno di recente.
+public class ModelCache {
+
+	// Da cambiare se cambia il modo di calcolare la chiave, per non riusare modelli salvati con l'altro formato
+	private static final int KEY_VERSION = 1;
+	private static final String MODEL_EXTENSION = ".model";
+
+	// Cartella della cache, impostabile con -DmodelCache (default "model-cache"), e dimensione massima
+	// in MB con -DmodelCacheMaxMB (default 512, 0 per disattivare la cache)
+	private static final Path CACHE_DIRECTORY = Paths.get(System.getProperty("modelCache", "model-cache"));
+	private static final long MAX_BYTES = Long.getLong("modelCacheMaxMB", 512) * 1024 * 1024;
+
+	private ModelCache() {
+		throw new IllegalStateException("This should not be called!");
+	}
+
+	// Ritorna il classificatore addestrato sul training set: quello salvato nella cache se c'è, altrimenti
+	// addestra quello passato e lo salva. Il classificatore va configurato (opzioni, filtro) prima della chiamata.
+	@SuppressWarnings("unchecked")
+	public static <C extends Classifier> C train(C classifier, Instances training) throws Exception {
+
+		return RunMetrics.time("train", () -> {
+
+			if (MAX_BYTES <= 0) {
+				classifier.buildClassifier(training);
+				return classifier;
+			}
+
+			Path modelFile = CACHE_DIRECTORY.resolve(getKey(classifier, training) + MODEL_EXTENSION);
+
+			Object cached = read(modelFile);
+			if (cached != null && cached.getClass() == classifier.getClass()) {
+				RunMetrics.count("model_cache_hits", 1);
+				return (C) cached;
+			}
+
+			classifier.buildClassifier(training);
+			write(modelFile, classifier);
+			return classifier;
+		});
+	}
+
+	// Legge il modello salvato, o ritorna null se non c'è o non è leggibile (ad esempio salvato con un'altra
+	// versione di Weka o cancellato nel frattempo da un altro thread)
+	private static Object read(Path modelFile) {
+
+		if (!Files.exists(modelFile)) {
+			return null;
+		}
+		try (InputStream input = new BufferedInputStream(Files.newInputStream(modelFile))) {
+			Object model = SerializationHelper.read(input);
+			// Aggiorno la data di modifica, che è quella usata per scegliere i modelli da cancellare
+			Files.setLastModifiedTime(modelFile, FileTime.fromMillis(System.currentTimeMillis()));
+			return model;
+		} catch (Exception e) {
+			LoggerClass.infoLog("Modello in cache non leggibile, lo addestro di nuovo: {}", modelFile);
+			return null;
+		}
+	}
+
+	// Salvo tramite un file temporaneo, così un run interrotto non lascia un modello a metà. Un errore di
+	// scrittura non blocca la valutazione: il modello è comunque già addestrato.
+	private static void write(Path modelFile, Classifier classifier) {
+
+		try {
+			Files.createDirectories(CACHE_DIRECTORY);
+			Path temporaryFile = Files.createTempFile(CACHE_DIRECTORY, modelFile.getFileName().toString(), ".tmp");
+			try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporaryFile))) {
+				SerializationHelper.write(output, classifier);
+			}
+			Files.move(temporaryFile, modelFile, StandardCopyOption.REPLACE_EXISTING);
+			evict();
+		} catch (Exception e) {
+			LoggerClass.infoLog("Impossibile salvare il modello in cache: {}", modelFile);
+		}
+	}
+
+	// Cancella i modelli usati meno di recente finché la cache non torna sotto la dimensione massima
+	private static synchronized void evict() throws IOException {
+
+		List<Path> models = new ArrayList<>();
+		long totalBytes = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(CACHE_DIRECTORY, "*" + MODEL_EXTENSION)) {
+			for (Path model : files) {
+				models.add(model);
+				totalBytes += Files.size(model);
+			}
+		}
+		if (totalBytes <= MAX_BYTES) {
+			return;
+		}
+
+		List<FileTime> lastUses = new ArrayList<>();
+		for (Path model : models) {
+			lastUses.add(Files.getLastModifiedTime(model));
+		}
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < models.size(); i++) {
+			order.add(i);
+		}
+		order.sort(Comparator.comparing(lastUses::get));
+
+		for (int i : order) {
+			if (totalBytes <= MAX_BYTES) {
+				break;
+			}
+			long size = Files.size(models.get(i));
+			if (Files.deleteIfExists(models.get(i))) {
+				totalBytes -= size;
+			}
+		}
+	}
+
+	// sha256 di classificatore, opzioni e training set
+	private static String getKey(Classifier classifier, Instances training) throws IOException {
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 non disponibile", e);
+		}
+
+		try (DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new DigestOutputStream(new NullOutputStream(), digest)))) {
+
+			output.writeInt(KEY_VERSION);
+			output.writeUTF(classifier.getClass().getName());
+			if (classifier instanceof OptionHandler) {
+				writeString(output, Utils.joinOptions(((OptionHandler) classifier).getOptions()));
+			}
+
+			// Header arff (attributi e valori nominali) ed indice della classe
+			writeString(output, new Instances(training, 0).toString());
+			output.writeInt(training.classIndex());
+
+			output.writeInt(training.numInstances());
+			for (int i = 0; i < training.numInstances(); i++) {
+				Instance instance = training.instance(i);
+				for (int j = 0; j < training.numAttributes(); j++) {
+					output.writeDouble(instance.value(j));
+				}
+				output.writeDouble(instance.weight());
+			}
+		}
+
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	// writeUTF è limitato a 64KB, l'header del training set può essere più lungo
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	// Stream che scarta tutto: serve solo a far passare i byte dal digest
+	private static class NullOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) {
+			// Nulla da scrivere
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			// Nulla da scrivere
+		}
+	}
+
+}
@@ -2,8 +2,13 @@ package machine_learning;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
+import main.RunMetrics;
 import weka.attributeSelection.CfsSubsetEval;
 import weka.attributeSelection.GreedyStepwise;
 import weka.classifiers.AbstractClassifier;
@@ -32,6 +37,18 @@ public class TechniquesLogic {
 	private static final String NO_SAMPLING = "No sampling";
 	private static final Logger LOGGER = Logger.getLogger(TechniquesLogic.class.getName());
 
+	//Tecniche di sampling, nell'ordine in cui compaiono i risultati
+	private static final String[] SAMPLING_TECHNIQUES = { NO_SAMPLING, UNDER_SAMPLING, OVER_SAMPLING, SMOTE };
+
+	//Thread per le valutazioni delle tecniche di sampling, impostabili con -DgridWorkers=N. Sono daemon
+	//perché il pool resta attivo per tutta l'esecuzione.
+	private static final ExecutorService GRID_EXECUTOR = Executors.newFixedThreadPool(
+			Math.max(1, Integer.getInteger("gridWorkers", Runtime.getRuntime().availableProcessors())), runnable -> {
+				Thread thread = new Thread(runnable, "evaluation-grid");
+				thread.setDaemon(true);
+				return thread;
+			});
+
 	
 	//Applico feature selection, varie tecniche di sampling e valuto il modello. Prende in input l'oggetto della valutazione
 	//il nome del classificatore, la percentuale, nel training set, della classe maggioritaria e ritorna una lista di 
@@ -77,16 +94,13 @@ public class TechniquesLogic {
 	//Applico diverse tecniche di sampling e valuto il modello. Prendo in input l'oggetto della valutazione
 	//il nome del classificatore, la percentuale, nel training set, della classe maggioritaria e ritorna una lista di 
 	// stringhe con le metriche calcolate nelle varie run.
+	//Le quattro tecniche di sampling vengono valutate in parallelo, ciascuna con le sue copie dei dataset e dei
+	//classificatori ed il suo oggetto Evaluation; le righe vengono restituite nello stesso ordine di prima.
 	public static List<String> applySampling(Instances training, Instances testing, double percentageMajorityClass, String featureSelection) throws HandledException {
 		
 		//Mi creo l'array che conterrà i risultati.
 		ArrayList<String> result = new ArrayList<>();
 		
-		//Prendo i 3 classificatori da usare.
-		IBk classifierIBk = new IBk();
-		RandomForest classifierRF = new RandomForest();
-		NaiveBayes classifierNB = new NaiveBayes();
-		
 		//Prendo il numero di attributi originale, senza filtri.
 		int numAttrNoFilter = training.numAttributes();
 		
@@ -94,36 +108,92 @@ public class TechniquesLogic {
 		training.setClassIndex(numAttrNoFilter - 1);
 		testing.setClassIndex(numAttrNoFilter - 1);
 
-		// Genero i tre classificatori con i dati del training set.
+		List<Future<List<String>>> samplingResults = new ArrayList<>();
+		for (String sampling : SAMPLING_TECHNIQUES) {
+			samplingResults.add(GRID_EXECUTOR.submit(
+					() -> evaluateSampling(training, testing, sampling, percentageMajorityClass, featureSelection)));
+		}
+
 		try {
-			classifierNB.buildClassifier(training);
-			classifierRF.buildClassifier(training);
-			classifierIBk.buildClassifier(training);
-		} catch (Exception e) {
-			throw new HandledException("Errore durante la generazione dei classificatori!");
+			for (Future<List<String>> samplingResult : samplingResults) {
+				result.addAll(samplingResult.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HandledException("Errore nell'applicazione del sampling.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof HandledException) {
+				throw (HandledException) e.getCause();
+			}
+			throw new HandledException("Errore nell'applicazione del sampling.");
+		}
+
+		return result;
+
+
+	}
+
+	//Valuto i tre classificatori con una tecnica di sampling. Come nella versione sequenziale un solo oggetto
+	//Evaluation viene usato per RF, IBk e NB, nell'ordine: i risultati di IBk e NB comprendono quindi anche le
+	//valutazioni precedenti della stessa tecnica.
+	private static List<String> evaluateSampling(Instances sharedTraining, Instances sharedTesting, String sampling,
+			double percentageMajorityClass, String featureSelection) throws HandledException {
+
+		ArrayList<String> result = new ArrayList<>();
+
+		//Copie dei dataset, usate solo da questa valutazione
+		Instances training = new Instances(sharedTraining);
+		Instances testing = new Instances(sharedTesting);
+
+		//Prendo i 3 classificatori da usare.
+		IBk classifierIBk = new IBk();
+		RandomForest classifierRF = new RandomForest();
+		NaiveBayes classifierNB = new NaiveBayes();
+
+		// Senza sampling genero i tre classificatori con i dati del training set (o li leggo dalla cache
+		// dei modelli), altrimenti vengono generati dal filtered classifier
+		if (sampling.equals(NO_SAMPLING)) {
+			try {
+				classifierNB = ModelCache.train(classifierNB, training);
+				classifierRF = ModelCache.train(classifierRF, training);
+				classifierIBk = ModelCache.train(classifierIBk, training);
+			} catch (Exception e) {
+				throw new HandledException("Errore durante la generazione dei classificatori!");
+			}
 		}
-		
 
-		// Prendo un oggetto evaluation e valuto senza sampling e feature selection.
-		Evaluation eval;
-		
 		try {
-			eval = new Evaluation(training);
-			
-			//Non applico nessun filtro per il sampling, ma valuto il classificatore senza questa tecnica.
+			FilteredClassifier filteredClassifier = getSamplingClassifier(sampling, training, percentageMajorityClass);
+
+			// Con over sampling e SMOTE la valutazione viene creata sul testing set, come in origine
+			Evaluation eval = sampling.equals(OVER_SAMPLING) || sampling.equals(SMOTE) ? new Evaluation(testing)
+					: new Evaluation(training);
+
 			//Ripeto per i tre classificatori considerati ed aggiungo il risultato all'Arraylist che li 
 			//mantiene tutti quanti.
-			applyFilterForSampling(null, eval, training, testing, classifierRF);
-			addResult(eval, result, "RF", NO_SAMPLING, featureSelection);
+			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierRF);
+			addResult(eval, result, "RF", sampling, featureSelection);
+
+			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierIBk);
+			addResult(eval, result, "IBk", sampling, featureSelection);
 
-			applyFilterForSampling(null, eval, training, testing, classifierIBk);
-			addResult(eval, result, "IBk", NO_SAMPLING, featureSelection);
+			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierNB);
+			addResult(eval, result, "NB", sampling, featureSelection);
+
+		} catch (Exception e) {
+			throw new HandledException("Errore nell'applicazione del sampling.");
+		}
 
-			applyFilterForSampling(null, eval, training, testing, classifierNB);
-			addResult(eval, result, "NB", NO_SAMPLING, featureSelection);
+		return result;
+	}
+
+	//Mi creo il filtered classifier con il filtro della tecnica di sampling, null se non va applicato il sampling
+	private static FilteredClassifier getSamplingClassifier(String sampling, Instances training, double percentageMajorityClass) throws Exception {
 
-			// Mi creo un filtered classifier
-			FilteredClassifier filteredClassifier = new FilteredClassifier();
+		FilteredClassifier filteredClassifier = new FilteredClassifier();
+
+		switch (sampling) {
+		case UNDER_SAMPLING:
 			//Mi creo un altro dataset che sarà il mio UnderSampled
 			SpreadSubsample  underSampling = new SpreadSubsample();
 			//Gli dò i dati di training
@@ -133,22 +203,9 @@ public class TechniquesLogic {
 			underSampling.setOptions(options);
 			//Imposto il filtro così creato al classificatore
 			filteredClassifier.setFilter(underSampling);
+			return filteredClassifier;
 
-			// Valuto di nuovo i tre classificatori, stavolta con il classificatore con filtro applicato
-			//In questa fase sto applicando underSampling.
-			eval = new Evaluation(training);
-
-			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierRF);
-			addResult(eval, result, "RF", UNDER_SAMPLING, featureSelection);
-
-			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierIBk);
-			addResult(eval, result, "IBk", UNDER_SAMPLING, featureSelection);
-
-			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierNB);
-			addResult(eval, result, "NB", UNDER_SAMPLING, featureSelection);
-
-			// Creo un altro classificatore
-			filteredClassifier = new FilteredClassifier();
+		case OVER_SAMPLING:
 			//Stavolta applico over sampling ai dati di training
 			Resample  overSampling = new Resample();
 			overSampling.setInputFormat(training);
@@ -158,45 +215,18 @@ public class TechniquesLogic {
 			overSampling.setOptions(optionsForOverSampling);
 			//Imposto il filtro appena creato
 			filteredClassifier.setFilter(overSampling);
+			return filteredClassifier;
 
-			// Valuto nuovamente i tre classificatori sul testing set, questa volta applicando over sampling
-			eval = new Evaluation(testing);	
-
-			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierRF);
-			addResult(eval, result, "RF", OVER_SAMPLING, featureSelection);
-
-			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierIBk);
-			addResult(eval, result, "IBk", OVER_SAMPLING, featureSelection);
-
-			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierNB);
-			addResult(eval, result, "NB", OVER_SAMPLING, featureSelection);
-
+		case SMOTE:
 			// Applico SMOTE, creandone una nuova istanza
 			SMOTE smote = new SMOTE();
-			filteredClassifier = new FilteredClassifier();
 			smote.setInputFormat(training);
 			filteredClassifier.setFilter(smote);
+			return filteredClassifier;
 
-			// Valuto nuovamente i tre classificatori, stavolta con SMOTE applicato al training set
-			eval = new Evaluation(testing);	
-
-			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierRF);
-			addResult(eval, result, "RF", SMOTE, featureSelection);
-
-			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierIBk);
-			addResult(eval, result, "IBk", SMOTE, featureSelection);
-
-			applyFilterForSampling(filteredClassifier, eval, training, testing, classifierNB);
-			addResult(eval, result, "NB", SMOTE, featureSelection);
-
-
-		} catch (Exception e) {
-			throw new HandledException("Errore nell'applicazione del sampling.");
-		}	
-
-		return result;
-
-
+		default:
+			return null;
+		}
 	}
 
 	
@@ -210,14 +240,14 @@ public class TechniquesLogic {
 			if (filteredClassifier != null) {
 				//Imposto il nome del classificatore
 				filteredClassifier.setClassifier(classifierName);
-				//Faccio la build di quest'ultimo, con i dati di training
-				filteredClassifier.buildClassifier(training);
+				//Faccio la build di quest'ultimo, con i dati di training, o lo leggo dalla cache dei modelli
+				FilteredClassifier trainedClassifier = ModelCache.train(filteredClassifier, training);
 				//Valuto il classificatore sui dati di testing
-				eval.evaluateModel(filteredClassifier, testing);
+				RunMetrics.time("evaluate", () -> eval.evaluateModel(trainedClassifier, testing));
 
 				// Altrimenti lo valuto semplicemente.
 			} else {
-				eval.evaluateModel(classifierName, testing);
+				RunMetrics.time("evaluate", () -> eval.evaluateModel(classifierName, testing));
 
 			}
 		} catch (Exception e) {
@@ -0,0 +1,114 @@
+package machine_learning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+// Esegue in parallelo i fold del walk forward di uno o più progetti. Ogni fold prende i suoi training e testing set
+// dalla FoldSource e usa classificatori propri, quindi i fold sono indipendenti tra loro; i risultati vengono
+// comunque restituiti nell'ordine (progetto, fold), come nell'esecuzione sequenziale. Con l'addestramento
+// incrementale invece i fold di un progetto dipendono dal precedente, e vanno valutati in ordine.
+public class WalkForward {
+
+	// Numero di fold valutati insieme, impostabile con -DfoldWorkers=N (1 = esecuzione sequenziale)
+	private static final int FOLD_WORKERS = Integer.getInteger("foldWorkers", Runtime.getRuntime().availableProcessors());
+
+	// Addestramento incrementale tra un fold e il successivo, attivabile con -DincrementalTraining=true: i fold
+	// di ogni progetto vengono valutati in ordine, un progetto per thread
+	private static final boolean INCREMENTAL_TRAINING = Boolean.getBoolean("incrementalTraining");
+
+	// Valutazione di un singolo fold
+	public interface FoldTask<T> {
+		T evaluate(FoldSource folds, int trainingLimit) throws Exception;
+	}
+
+	private WalkForward() {
+		throw new IllegalStateException("This should not be called!");
+	}
+
+	public static boolean isIncrementalTraining() {
+		return INCREMENTAL_TRAINING;
+	}
+
+	// Valuta i fold da 1 a getMaxVersions() - 1 di ogni progetto. Ritorna, per ogni progetto, i risultati dei fold in ordine.
+	public static <T> List<List<T>> evaluateFolds(List<? extends FoldSource> projects, FoldTask<T> task) throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, FOLD_WORKERS));
+		try {
+			// I fold di tutti i progetti vengono sottomessi subito, così i progetti vengono valutati insieme
+			List<List<Future<T>>> pendingResults = new ArrayList<>();
+			for (FoldSource folds : projects) {
+				List<Future<T>> projectResults = new ArrayList<>();
+				for (int trainingLimit = 1; trainingLimit < folds.getMaxVersions(); trainingLimit++) {
+					int fold = trainingLimit;
+					projectResults.add(executor.submit(() -> task.evaluate(folds, fold)));
+				}
+				pendingResults.add(projectResults);
+			}
+
+			List<List<T>> results = new ArrayList<>();
+			for (List<Future<T>> projectResults : pendingResults) {
+				List<T> projectOutcomes = new ArrayList<>();
+				for (Future<T> result : projectResults) {
+					projectOutcomes.add(await(result));
+				}
+				results.add(projectOutcomes);
+			}
+			return results;
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// Come evaluateFolds, ma i fold di ciascun progetto vengono valutati in ordine dallo stesso thread, con un
+	// task creato per il progetto: il task può così portarsi dietro i classificatori da un fold al successivo.
+	public static <T> List<List<T>> evaluateFoldsInOrder(List<? extends FoldSource> projects,
+			Supplier<FoldTask<T>> taskFactory) throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(FOLD_WORKERS, projects.size())));
+		try {
+			List<Future<List<T>>> pendingResults = new ArrayList<>();
+			for (FoldSource folds : projects) {
+				pendingResults.add(executor.submit(() -> {
+					FoldTask<T> task = taskFactory.get();
+					List<T> projectOutcomes = new ArrayList<>();
+					for (int trainingLimit = 1; trainingLimit < folds.getMaxVersions(); trainingLimit++) {
+						projectOutcomes.add(task.evaluate(folds, trainingLimit));
+					}
+					return projectOutcomes;
+				}));
+			}
+
+			List<List<T>> results = new ArrayList<>();
+			for (Future<List<T>> projectResults : pendingResults) {
+				results.add(await(projectResults));
+			}
+			return results;
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// Aspetta il risultato di un task, rilanciando l'eccezione del task stesso se è fallito
+	private static <R> R await(Future<R> result) throws Exception {
+
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw e;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+}
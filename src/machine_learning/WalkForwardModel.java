@@ -0,0 +1,49 @@
+package machine_learning;
+
+import java.util.function.Supplier;
+
+import main.RunMetrics;
+import weka.classifiers.Classifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.core.Instances;
+
+// Un classificatore addestrato lungo i fold del walk forward di un progetto. Il training set del fold j+1 è
+// quello del fold j più la release j+1, cioè il testing set del fold j: se il classificatore è aggiornabile
+// (NaiveBayesUpdateable, IBk) e i fold arrivano in ordine, gli passo solo quelle istanze invece di
+// addestrarlo di nuovo da zero. Gli altri classificatori vengono addestrati su tutto il training set ad ogni fold.
+public class WalkForwardModel {
+
+	private final Supplier<? extends Classifier> factory;
+
+	// Classificatore addestrato sul fold trainingLimit, e testing set di quel fold (la release successiva)
+	private Classifier model;
+	private int trainingLimit;
+	private Instances nextRelease;
+
+	public WalkForwardModel(Supplier<? extends Classifier> factory) {
+		this.factory = factory;
+	}
+
+	// Ritorna il classificatore addestrato sul training set del fold. Il classificatore ritornato resta valido
+	// fino alla chiamata successiva, che può aggiornarlo.
+	public Classifier train(Fold fold) throws Exception {
+
+		if (model instanceof UpdateableClassifier && nextRelease != null
+				&& fold.getTrainingLimit() == trainingLimit + 1) {
+			UpdateableClassifier updateableModel = (UpdateableClassifier) model;
+			Instances newInstances = nextRelease;
+			RunMetrics.time("train", () -> {
+				for (int i = 0; i < newInstances.numInstances(); i++) {
+					updateableModel.updateClassifier(newInstances.instance(i));
+				}
+			});
+		} else {
+			model = ModelCache.train(factory.get(), fold.getTrainingSet());
+		}
+
+		trainingLimit = fold.getTrainingLimit();
+		nextRelease = fold.getTestingSet();
+		return model;
+	}
+
+}
@@ -0,0 +1,124 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+// Handler che non blocca chi scrive nel log: i record vanno in un buffer circolare limitato e un thread daemon
+// li passa, nell'ordine, agli handler veri (console e file). Se il buffer è pieno il record viene scartato e
+// contato, invece di far aspettare il thread chiamante (un errore o un avviso scarta invece il record più
+// vecchio); il numero dei record persi viene poi scritto nel log.
+// I messaggi con parametri ("{}") vengono formattati dal thread del log.
+public class AsyncLogHandler extends Handler {
+
+	private final List<Handler> targets;
+	private final BlockingQueue<LogRecord> buffer;
+	private final AtomicLong droppedRecords = new AtomicLong();
+	private final Thread writer;
+	private volatile boolean closed;
+
+	public AsyncLogHandler(List<Handler> targets, int capacity) {
+
+		this.targets = new ArrayList<>(targets);
+		this.buffer = new ArrayBlockingQueue<>(capacity);
+		this.writer = new Thread(this::writeRecords, "async-log-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void publish(LogRecord logRecord) {
+
+		if (closed || !isLoggable(logRecord)) {
+			return;
+		}
+		if (buffer.offer(logRecord)) {
+			return;
+		}
+		// Buffer pieno: errori ed avvisi prendono il posto del record più vecchio, gli altri vengono scartati
+		if (logRecord.getLevel().intValue() >= Level.WARNING.intValue() && buffer.poll() != null) {
+			buffer.offer(logRecord);
+		}
+		droppedRecords.incrementAndGet();
+	}
+
+	private void writeRecords() {
+
+		try {
+			while (!closed) {
+				write(buffer.take());
+			}
+		} catch (InterruptedException e) {
+			// Chiusura dell'handler: i record rimasti vengono scritti da close()
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void write(LogRecord logRecord) {
+
+		reportDroppedRecords();
+		LoggerClass.formatParameters(logRecord);
+		publishToTargets(logRecord);
+	}
+
+	// Scrive quanti record sono stati scartati dall'ultima volta, se ce ne sono
+	private void reportDroppedRecords() {
+
+		long dropped = droppedRecords.getAndSet(0);
+		if (dropped > 0) {
+			LogRecord warning = new LogRecord(Level.WARNING, "Buffer del log pieno, messaggi persi: " + dropped);
+			warning.setSourceClassName(LoggerClass.class.getName());
+			warning.setSourceMethodName("publish");
+			publishToTargets(warning);
+		}
+	}
+
+	private void publishToTargets(LogRecord logRecord) {
+
+		for (Handler target : targets) {
+			target.publish(logRecord);
+		}
+	}
+
+	// I record vengono scritti dal thread del log appena possibile: qui flush dei soli handler veri
+	@Override
+	public void flush() {
+
+		for (Handler target : targets) {
+			target.flush();
+		}
+	}
+
+	// Ferma il thread del log, scrive i record ancora nel buffer e chiude gli handler veri. Viene chiamato anche
+	// da LogManager alla chiusura della JVM, quindi i messaggi di fine run non vanno persi.
+	@Override
+	public void close() {
+
+		if (closed) {
+			return;
+		}
+		closed = true;
+		writer.interrupt();
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		List<LogRecord> remaining = new ArrayList<>();
+		buffer.drainTo(remaining);
+		for (LogRecord logRecord : remaining) {
+			write(logRecord);
+		}
+		reportDroppedRecords();
+		for (Handler target : targets) {
+			target.close();
+		}
+	}
+
+}
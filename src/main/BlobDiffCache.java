@@ -0,0 +1,66 @@
+package main;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+
+// Linee toccate ed aggiunte per coppia di blob (vecchio, nuovo), con un numero massimo di coppie: quando è pieno
+// viene tolta la coppia usata meno di recente. Lo stesso cambiamento compare più volte nella storia quando un
+// commit viene riportato su più branch (cherry-pick, merge con lo stesso contenuto): il diff dei due blob viene
+// così calcolato una volta sola. Condiviso tra i thread dell'analisi dei commit.
+public class BlobDiffCache {
+
+	private final Map<BlobPair, int[]> lineCounts;
+
+	// maxEntries = 0 disattiva la cache
+	public BlobDiffCache(int maxEntries) {
+
+		this.lineCounts = new LinkedHashMap<BlobPair, int[]>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<BlobPair, int[]> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	// Linee toccate ed aggiunte già calcolate per la coppia di blob, o null
+	public synchronized int[] get(AnyObjectId oldBlob, AnyObjectId newBlob) {
+		return lineCounts.get(new BlobPair(oldBlob, newBlob));
+	}
+
+	public synchronized void put(AnyObjectId oldBlob, AnyObjectId newBlob, int[] linesChanged) {
+		lineCounts.put(new BlobPair(oldBlob.copy(), newBlob.copy()), linesChanged);
+	}
+
+	private static final class BlobPair {
+
+		private final AnyObjectId oldBlob;
+		private final AnyObjectId newBlob;
+
+		BlobPair(AnyObjectId oldBlob, AnyObjectId newBlob) {
+
+			this.oldBlob = oldBlob;
+			this.newBlob = newBlob;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+
+			if (!(other instanceof BlobPair)) {
+				return false;
+			}
+			BlobPair pair = (BlobPair) other;
+			return AnyObjectId.isEqual(oldBlob, pair.oldBlob) && AnyObjectId.isEqual(newBlob, pair.newBlob);
+		}
+
+		@Override
+		public int hashCode() {
+			return oldBlob.hashCode() * 31 + newBlob.hashCode();
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jgit.diff.DiffEntry;
+
+// Registro dei commit già analizzati da un progetto, salvato su disco tra un'esecuzione e l'altra.
+// Un nuovo run fa il diff solo dei commit che non ci sono ancora, e ricostruisce metriche e bugginess
+// riapplicando i record nell'ordine del log, così il risultato è uguale a quello di un run completo.
+public class CommitLedger {
+
+	private static final int MAGIC = 0x4C454447;
+	private static final int FORMAT_VERSION = 3;
+
+	// Map<SHA del commit, risultato del diff>, condivisa tra i worker dell'analisi parallela
+	private final Map<String, CommitRecord> records = new ConcurrentHashMap<>();
+
+	// Impostazioni del diff con cui sono stati calcolati i record (es. riconoscimento dei file rinominati),
+	// null finché non vengono impostate
+	private String diffSettings;
+
+	// Numero di commit aggiunti dal run corrente
+	private final AtomicInteger newRecords = new AtomicInteger();
+
+	public CommitRecord get(String commitId) {
+		return records.get(commitId);
+	}
+
+	public void put(CommitRecord commitRecord) {
+
+		if (records.putIfAbsent(commitRecord.getCommitId(), commitRecord) == null) {
+			newRecords.incrementAndGet();
+		}
+	}
+
+	public int size() {
+		return records.size();
+	}
+
+	public int getNewRecords() {
+		return newRecords.get();
+	}
+
+	// Imposta le impostazioni del diff del run corrente. Se i record sono stati calcolati con impostazioni
+	// diverse vengono scartati, perché il diff degli stessi commit darebbe un risultato diverso.
+	public void useDiffSettings(String currentDiffSettings) {
+
+		if (diffSettings != null && !diffSettings.equals(currentDiffSettings) && !records.isEmpty()) {
+			LoggerClass.infoLog("Impostazioni del diff cambiate ({} -> {}), il registro dei commit riparte da zero",
+					diffSettings, currentDiffSettings);
+			records.clear();
+		}
+		diffSettings = currentDiffSettings;
+	}
+
+	// Carica il registro dal file, o ne ritorna uno vuoto se il file non esiste
+	public static CommitLedger load(Path ledgerFile) throws IOException {
+
+		CommitLedger ledger = new CommitLedger();
+		if (!Files.exists(ledgerFile)) {
+			return ledger;
+		}
+
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(Files.newInputStream(ledgerFile))))) {
+
+			if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+				LoggerClass.infoLog("Formato del registro dei commit non riconosciuto, riparto da zero: {}", ledgerFile);
+				return ledger;
+			}
+
+			ledger.diffSettings = input.readBoolean() ? input.readUTF() : null;
+			int commits = input.readInt();
+
+			for (int i = 0; i < commits; i++) {
+				String commitId = input.readUTF();
+				int chgSetSize = input.readInt();
+				int files = input.readInt();
+
+				List<CommitRecord.FileChange> fileChanges = new ArrayList<>(files);
+				for (int j = 0; j < files; j++) {
+					fileChanges.add(new CommitRecord.FileChange(input.readUTF(),
+							DiffEntry.ChangeType.values()[input.readByte()], input.readInt(), input.readInt()));
+				}
+				ledger.records.put(commitId, new CommitRecord(commitId, chgSetSize, fileChanges));
+			}
+		}
+		return ledger;
+	}
+
+	// Salva il registro, scrivendo prima su un file temporaneo per non lasciarne uno a metà se il run si interrompe
+	public void save(Path ledgerFile) throws IOException {
+
+		if (ledgerFile.getParent() != null) {
+			Files.createDirectories(ledgerFile.getParent());
+		}
+		Path temporaryFile = ledgerFile.resolveSibling(ledgerFile.getFileName() + ".tmp");
+
+		try (DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temporaryFile))))) {
+
+			output.writeInt(MAGIC);
+			output.writeInt(FORMAT_VERSION);
+			output.writeBoolean(diffSettings != null);
+			if (diffSettings != null) {
+				output.writeUTF(diffSettings);
+			}
+			output.writeInt(records.size());
+
+			for (CommitRecord commitRecord : records.values()) {
+				output.writeUTF(commitRecord.getCommitId());
+				output.writeInt(commitRecord.getChgSetSize());
+				output.writeInt(commitRecord.getFileChanges().size());
+
+				for (CommitRecord.FileChange fileChange : commitRecord.getFileChanges()) {
+					output.writeUTF(fileChange.getPath());
+					output.writeByte(fileChange.getChangeType().ordinal());
+					output.writeInt(fileChange.getLinesTouched());
+					output.writeInt(fileChange.getLinesAdded());
+				}
+			}
+		}
+		Files.move(temporaryFile, ledgerFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+}
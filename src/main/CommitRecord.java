@@ -0,0 +1,68 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.diff.DiffEntry;
+
+// Risultato del diff di un commit con il suo primo parent: il numero di file committati insieme e,
+// per ogni classe java, il tipo di modifica e le linee toccate ed aggiunte. Basta questo per
+// ricalcolare metriche e bugginess senza rifare il diff.
+public class CommitRecord {
+
+	private final String commitId;
+	private final int chgSetSize;
+	private final List<FileChange> fileChanges;
+
+	public static class FileChange {
+
+		private final String path;
+		private final DiffEntry.ChangeType changeType;
+		private final int linesTouched;
+		private final int linesAdded;
+
+		public FileChange(String path, DiffEntry.ChangeType changeType, int linesTouched, int linesAdded) {
+
+			this.path = path;
+			this.changeType = changeType;
+			this.linesTouched = linesTouched;
+			this.linesAdded = linesAdded;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public DiffEntry.ChangeType getChangeType() {
+			return changeType;
+		}
+
+		public int getLinesTouched() {
+			return linesTouched;
+		}
+
+		public int getLinesAdded() {
+			return linesAdded;
+		}
+	}
+
+	public CommitRecord(String commitId, int chgSetSize, List<FileChange> fileChanges) {
+
+		this.commitId = commitId;
+		this.chgSetSize = chgSetSize;
+		this.fileChanges = new ArrayList<>(fileChanges);
+	}
+
+	public String getCommitId() {
+		return commitId;
+	}
+
+	public int getChgSetSize() {
+		return chgSetSize;
+	}
+
+	public List<FileChange> getFileChanges() {
+		return fileChanges;
+	}
+
+}
@@ -1,27 +1,53 @@
 package main;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-import org.apache.commons.collections4.MapIterator;
-import org.apache.commons.collections4.keyvalue.MultiKey;
-import org.apache.commons.collections4.map.MultiKeyMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffConfig;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.eclipse.jgit.util.io.NullOutputStream;
 
 import logic.JiraLogic;
+import logic.MetricStore;
+import logic.ReleaseTimeline;
 
 public class DatasetCreator {
 	
@@ -29,101 +55,416 @@ public class DatasetCreator {
 	public static final String USER_DIRECTORY = "user.dir";
 	public static final String FILE_EXTENSION = ".java";
 	
+	// Numero di blocchi di commit per worker nell'analisi parallela
+	private static final int CHUNKS_PER_WORKER = 4;
+
+	// Buffer per la scrittura del csv
+	private static final int CSV_BUFFER_SIZE = 1 << 20;
+
+	// Coppie di blob di cui tenere le linee cambiate, impostabile con -DdiffCacheSize (0 = nessuna cache)
+	private static final int DIFF_CACHE_SIZE = Integer.getInteger("diffCacheSize", 50000);
+
+	// -DdetectRenames=true/false attiva o disattiva il riconoscimento dei file rinominati nel diff; se non
+	// impostato vale diff.renames della configurazione della repository (di default disattivato)
+	private static final String DETECT_RENAMES = System.getProperty("detectRenames");
+
+	private static final String CSV_HEADER = "Version Number,Filename,LOC_Touched,Number_Revisions,NumberBugFix,LOC_Added,"
+			+ "MAX_LOC_Added,ChgSetSize,Max_ChgSet,AVG_ChgSet,Avg_LOC_Added,Buggy\n";
+	
+	
+	// Repository da analizzare; se null uso la copia clonata in user.dir/NomeProgetto
+	private Repository repository;
+
+	// Linee cambiate delle coppie di blob già confrontate, condivise tra i worker
+	private final BlobDiffCache diffCache = new BlobDiffCache(DIFF_CACHE_SIZE);
 	
 	public DatasetCreator() {
 		//Non fa niente, creato per risolvere code smell
 	}
 	
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	public void buildDatasetUp(String projectName, JiraLogic jiraLogic, int latestVersion, MultiKeyMap mapToBuildDataset) throws IOException, GitAPIException {
+	// Usa la repository passata, ad esempio quella della cache, invece della copia in user.dir/NomeProgetto.
+	// La repository non viene chiusa, resta a carico di chi l'ha aperta.
+	public DatasetCreator(Repository repository) {
+		this.repository = repository;
+	}
+	
+	public void buildDatasetUp(String projectName, JiraLogic jiraLogic, int latestVersion, MetricStore metricStore) throws IOException, GitAPIException {
 
-		ArrayList<Integer> fileMetrics;
-		FileRepositoryBuilder builder = new FileRepositoryBuilder();
+		buildDatasetUp(projectName, jiraLogic, latestVersion, metricStore, 1);
+	}
 
-		// Imposto la cartella del progetto
-		String repoFolder = System.getProperty(USER_DIRECTORY) + "/" + projectName + "/.git";
-		Repository repo = builder.setGitDir(new File(repoFolder)).readEnvironment().findGitDir().build();
+	// Come sopra, ma con workers > 1 i commit vengono divisi in blocchi contigui ed analizzati in parallelo.
+	// Ogni blocco costruisce delle metriche parziali, unite poi a quelle del dataset nell'ordine dei commit.
+	public void buildDatasetUp(String projectName, JiraLogic jiraLogic, int latestVersion, MetricStore metricStore,
+			int workers) throws IOException, GitAPIException {
+
+		buildDatasetUp(projectName, jiraLogic, latestVersion, metricStore, workers, new CommitLedger());
+	}
+
+	// Come sopra, ma il diff viene fatto solo per i commit che non sono già nel registro passato. I commit nuovi
+	// vengono aggiunti al registro, che poi può essere salvato per il run successivo.
+	public void buildDatasetUp(String projectName, JiraLogic jiraLogic, int latestVersion, MetricStore metricStore,
+			int workers, CommitLedger ledger) throws IOException, GitAPIException {
+
+		Repository repo = getRepository(projectName);
 		
 		LoggerClass.infoLog("Inizio a costruirmi i dati per il csv...");
 		// Provo ad aprire la repo su Git
 		try (Git git = new Git(repo)) {
 
-			Iterable<RevCommit> commits = null;
-
-			// Mi prendo tutti i commit
-			commits = git.log().all().call();
-
-			// Itero sul singolo commit nella lista di commits
-			for (RevCommit commit : commits) {
-
-				// Vedo se ciascuno ha un "parent commit"
-				if (commit.getParentCount() != 0) {
-
-					// Prendo la data del commit
-					LocalDate commitDate = commit.getCommitterIdent().getWhen().toInstant()
-							.atZone(ZoneId.systemDefault()).toLocalDate();
-
-					// Prendo la versione di appartenenza del commit
-					int appartainingVersion = jiraLogic.getCommitAppartainingVersionIndex(commitDate);
-					List<DiffEntry> filesChanged;
-
-					// Vedo se l'indice della versione fa parte della prima metà delle release
-					if (appartainingVersion < latestVersion + 1) {
-						
-						//Analizzo il messaggio di commit di bugfix del ticket e lo aggiungo alla lista
-						List<Integer> ticketBugFix = jiraLogic.getTicketMessageCommitBugFix(commit.getFullMessage(),
-								projectName);
-						// Prendo la lista dei ticket associati al commit
-						List<Integer> ticketInformationBugginess = jiraLogic
-								.getTicketMessageCommitBuggy(commit.getFullMessage(), projectName);
-
-						// Prendo un nuovo formatter per prendere le differenze tra commit->parent
-						// commit
-						try (DiffFormatter differencesBetweenCommits = new DiffFormatter(NullOutputStream.INSTANCE)) {
-							
-							//Imposto la repository da cui prendere le differenze
-							differencesBetweenCommits.setRepository(repo);
-
-							// Prendo le differenze tra i due commit
-							filesChanged = differencesBetweenCommits.scan(commit.getParent(0), commit);
-
-							// Per ogni file cambiato nella lista dei file cambiati
-							for (DiffEntry singleFile : filesChanged) {
-
-								// Ci riferiamo solo a classi java
-								if (singleFile.getNewPath().endsWith(FILE_EXTENSION)) {
-
-									// Metto (solo se non presente) un record vuoto per la coppia (versione, path
-									// del file)
-									jiraLogic.putEmptyRecord(appartainingVersion, singleFile.getNewPath());
-
-									// Prendo le metriche aggiornate del file in questione
-									fileMetrics = (ArrayList<Integer>) jiraLogic.getMetrics(singleFile,
-											appartainingVersion, differencesBetweenCommits, filesChanged, ticketBugFix,
-											latestVersion + 1);
-
-									mapToBuildDataset.replace(appartainingVersion, singleFile.getNewPath(), fileMetrics);
-								
-									// Se ci sono ticket associati al commit, imposto la relativa bugginess)
-									jiraLogic.setClassBugginess(ticketInformationBugginess, singleFile,
-											latestVersion + 1);
-								}
-							}
-						}
+			// Mi prendo i commit fatti prima del rilascio di latestVersion: i successivi appartengono a versioni
+			// fuori dal dataset e vengono scartati dal RevWalk stesso, senza tenerne il corpo
+			List<RevCommit> commitList = new ArrayList<>();
+			LocalDate closingDate = jiraLogic.getReleaseTimeline().getClosingDate(latestVersion);
+			if (closingDate == null) {
+				git.log().all().call().forEach(commitList::add);
+			} else {
+				long closingSecond = closingDate.atStartOfDay(ZoneId.systemDefault()).toEpochSecond();
+				git.log().all().setRevFilter(CommitTimeRevFilter.before(new Date((closingSecond - 1) * 1000))).call()
+						.forEach(commitList::add);
+			}
+			RunMetrics.count("commits", commitList.size());
+			int[] commitVersions = getCommitVersions(commitList, jiraLogic.getReleaseTimeline());
+
+			// I record calcolati con altre impostazioni del diff non valgono per questo run
+			ledger.useDiffSettings(getDiffSettings(repo));
+			int ledgerSize = ledger.size();
+			LoggerClass.Progress progress = LoggerClass.progress("Commit analizzati", commitList.size());
+
+			if (workers <= 1) {
+
+				// Prendo un formatter per prendere le differenze tra commit->parent commit
+				try (DiffFormatter differencesBetweenCommits = new DiffFormatter(NullOutputStream.INSTANCE)) {
+
+					//Imposto la repository da cui prendere le differenze
+					differencesBetweenCommits.setRepository(repo);
+					configureRenameDetection(differencesBetweenCommits);
+
+					// Itero sul singolo commit nella lista di commits
+					for (int i = 0; i < commitList.size(); i++) {
+						analyzeCommit(commitList.get(i), commitVersions[i], projectName, jiraLogic, latestVersion,
+								differencesBetweenCommits, ledger);
+						progress.step();
 					}
 				}
+			} else {
+
+				buildDatasetInParallel(commitList, commitVersions, repo, projectName, jiraLogic, latestVersion, metricStore,
+						workers, ledger, progress);
+			}
+
+			LoggerClass.infoLog("Commit nel log: {}, diff calcolati in questo run: {}", commitList.size(), ledger.size() - ledgerSize);
+		}
+
+	}
+
+	// Per ogni versione da 1 a latestVersion, metto un record vuoto per tutte le classi java presenti nella
+	// release, cioè nell'albero dell'ultimo commit del branch principale (HEAD, seguendo il primo parent)
+	// con data precedente a quella di rilascio. Un commit fatto nel giorno del rilascio appartiene infatti
+	// alla versione successiva, come in JiraLogic.getCommitAppartainingVersionIndex.
+	public void putReleaseFileUniverse(String projectName, JiraLogic jiraLogic, int latestVersion) throws IOException {
+
+		Repository repo = getRepository(projectName);
+		ObjectId headId = repo.resolve(Constants.HEAD);
+		if (headId == null) {
+			return;
+		}
+
+		LoggerClass.infoLog("Prendo le classi java presenti in ciascuna release...");
+
+		try (RevWalk revWalk = new RevWalk(repo); TreeWalk treeWalk = new TreeWalk(repo)) {
+
+			// Catena dei commit del branch principale, dal più recente al più vecchio
+			List<RevCommit> mainlineCommits = new ArrayList<>();
+			RevCommit commit = revWalk.parseCommit(headId);
+			mainlineCommits.add(commit);
+			while (commit.getParentCount() != 0) {
+				commit = revWalk.parseCommit(commit.getParent(0));
+				mainlineCommits.add(commit);
+			}
+
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(PathSuffixFilter.create(FILE_EXTENSION));
+
+			for (int version = 1; version < latestVersion + 1; version++) {
+
+				LocalDate releaseDate = jiraLogic.getReleaseTimeline().getReleaseDate(version);
+				RevCommit releaseCommit = releaseDate == null ? null : findLastCommitBefore(mainlineCommits, releaseDate);
+				if (releaseCommit == null) {
+					continue;
+				}
+
+				treeWalk.reset(releaseCommit.getTree());
+				while (treeWalk.next()) {
+					jiraLogic.putEmptyRecord(version, treeWalk.getPathString());
+				}
+			}
+		}
+	}
+
+	// Versione d'appartenenza di ogni commit della lista, nello stesso ordine. I commit del log sono in ordine
+	// di data decrescente, quindi la versione viene trovata scorrendo la timeline insieme alla lista.
+	private static int[] getCommitVersions(List<RevCommit> commitList, ReleaseTimeline releaseTimeline) {
+
+		ReleaseTimeline.VersionSweep versionSweep = releaseTimeline.newVersionSweep();
+		ZoneId zone = ZoneId.systemDefault();
+		int[] commitVersions = new int[commitList.size()];
+		for (int i = 0; i < commitVersions.length; i++) {
+			// Stesso istante della data del committer, già letto con l'header del commit
+			LocalDate commitDate = Instant.ofEpochSecond(commitList.get(i).getCommitTime()).atZone(zone).toLocalDate();
+			commitVersions[i] = versionSweep.getVersionIndexAfter(commitDate);
+		}
+		return commitVersions;
+	}
+
+	// Il primo commit, andando indietro nella storia, con data precedente a quella passata
+	private static RevCommit findLastCommitBefore(List<RevCommit> mainlineCommits, LocalDate date) {
+
+		for (RevCommit commit : mainlineCommits) {
+			LocalDate commitDate = commit.getCommitterIdent().getWhen().toInstant().atZone(ZoneId.systemDefault())
+					.toLocalDate();
+			if (commitDate.isBefore(date)) {
+				return commit;
+			}
+		}
+		return null;
+	}
+
+	private Repository getRepository(String projectName) throws IOException {
+
+		if (repository != null) {
+			return repository;
+		}
+
+		FileRepositoryBuilder builder = new FileRepositoryBuilder();
+
+		// Imposto la cartella del progetto
+		String repoFolder = System.getProperty(USER_DIRECTORY) + "/" + projectName + "/.git";
+		return builder.setGitDir(new File(repoFolder)).readEnvironment().findGitDir().build();
+	}
+
+	// Analizza i blocchi di commit su un pool di workers. Ogni worker ha il proprio ObjectReader e DiffFormatter
+	// e scrive su metriche parziali; quelle del dataset vengono solo lette finché tutti i blocchi non sono finiti.
+	private void buildDatasetInParallel(List<RevCommit> commitList, int[] commitVersions, Repository repo, String projectName,
+			JiraLogic jiraLogic, int latestVersion, MetricStore metricStore, int workers, CommitLedger ledger,
+			LoggerClass.Progress progress) throws IOException {
+
+		// Più blocchi che worker, per bilanciare il carico tra commit piccoli e grandi
+		int chunkSize = Math.max(1, (commitList.size() + workers * CHUNKS_PER_WORKER - 1) / (workers * CHUNKS_PER_WORKER));
+		jiraLogic.prepareTicketMatching(projectName);
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<MetricStore>> partialDatasets = new ArrayList<>();
+
+			for (int from = 0; from < commitList.size(); from += chunkSize) {
+				int to = Math.min(from + chunkSize, commitList.size());
+				List<RevCommit> chunk = commitList.subList(from, to);
+				int[] chunkVersions = Arrays.copyOfRange(commitVersions, from, to);
+				partialDatasets.add(executor.submit(() -> analyzeCommitChunk(chunk, chunkVersions, repo, projectName,
+						jiraLogic, latestVersion, ledger, progress)));
+			}
+
+			// Aspetto tutti i blocchi prima di scrivere sulla mappa del dataset, poi li unisco in ordine
+			List<MetricStore> partialResults = new ArrayList<>();
+			for (Future<MetricStore> partialDataset : partialDatasets) {
+				partialResults.add(partialDataset.get());
+			}
+			for (MetricStore partialResult : partialResults) {
+				metricStore.merge(partialResult);
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Analisi dei commit interrotta", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Errore durante l'analisi parallela dei commit", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// Analizza un blocco contiguo di commit scrivendo le metriche su uno store parziale
+	private MetricStore analyzeCommitChunk(List<RevCommit> chunk, int[] chunkVersions, Repository repo, String projectName,
+			JiraLogic jiraLogic, int latestVersion, CommitLedger ledger, LoggerClass.Progress progress) throws IOException {
+
+		MetricStore partialDataset = new MetricStore();
+		JiraLogic partialView = jiraLogic.newPartialView(partialDataset);
+
+		try (ObjectReader reader = repo.newObjectReader();
+				DiffFormatter differencesBetweenCommits = new DiffFormatter(NullOutputStream.INSTANCE)) {
+
+			differencesBetweenCommits.setReader(reader, repo.getConfig());
+			configureRenameDetection(differencesBetweenCommits);
+
+			for (int i = 0; i < chunk.size(); i++) {
+				analyzeCommit(chunk.get(i), chunkVersions[i], projectName, partialView, latestVersion,
+						differencesBetweenCommits, ledger);
+				progress.step();
+			}
+		}
+		return partialDataset;
+	}
+
+	// Aggiorna le metriche dei file java toccati da un singolo commit. Il diff viene preso dal registro
+	// se il commit è già stato analizzato, altrimenti lo calcolo e lo aggiungo al registro.
+	// appartainingVersion è la versione d'appartenenza del commit, presa da getCommitVersions.
+	private void analyzeCommit(RevCommit commit, int appartainingVersion, String projectName, JiraLogic jiraLogic,
+			int latestVersion, DiffFormatter differencesBetweenCommits, CommitLedger ledger) throws IOException {
+
+		// Vedo se ciascuno ha un "parent commit"
+		if (commit.getParentCount() != 0) {
+
+			// Vedo se l'indice della versione fa parte della prima metà delle release
+			if (appartainingVersion < latestVersion + 1) {
+				
+				//Analizzo il messaggio di commit di bugfix del ticket e lo aggiungo alla lista
+				List<Integer> ticketBugFix = jiraLogic.getTicketMessageCommitBugFix(commit.getFullMessage(),
+						projectName);
+				// Prendo la lista dei ticket associati al commit
+				List<Integer> ticketInformationBugginess = jiraLogic
+						.getTicketMessageCommitBuggy(commit.getFullMessage(), projectName);
+
+				RunMetrics.count("tickets_matched", ticketBugFix.size());
+
+				CommitRecord commitRecord = ledger.get(commit.getName());
+				if (commitRecord == null) {
+					commitRecord = RunMetrics.time("diff", () -> diffCommit(commit, differencesBetweenCommits));
+					ledger.put(commitRecord);
+				}
+
+				// Per ogni classe java cambiata nel commit
+				for (CommitRecord.FileChange singleFile : commitRecord.getFileChanges()) {
+
+					// Metto (solo se non presente) un record vuoto per la coppia (versione, path
+					// del file)
+					jiraLogic.putEmptyRecord(appartainingVersion, singleFile.getPath());
+
+					// Aggiorno le metriche del file in questione
+					jiraLogic.getMetrics(singleFile.getPath(), appartainingVersion, singleFile.getLinesTouched(),
+							singleFile.getLinesAdded(), commitRecord.getChgSetSize(), ticketBugFix, latestVersion + 1);
+				
+					// Se ci sono ticket associati al commit, imposto la relativa bugginess)
+					jiraLogic.setClassBugginess(ticketInformationBugginess, singleFile.getPath(),
+							singleFile.getChangeType(), latestVersion + 1);
+				}
+			}
+		}
+	}
+
+	// Impostazioni che cambiano il diff di un commit, come le legge DiffFormatter dalla configurazione della
+	// repository: riconoscimento dei file rinominati (anche da -DdetectRenames) ed algoritmo del diff
+	static String getDiffSettings(Repository repo) {
+
+		Config config = repo.getConfig();
+		boolean detectRenames = DETECT_RENAMES != null ? Boolean.parseBoolean(DETECT_RENAMES)
+				: config.get(DiffConfig.KEY).isRenameDetectionEnabled();
+		DiffAlgorithm.SupportedAlgorithm algorithm = config.getEnum(ConfigConstants.CONFIG_DIFF_SECTION, null,
+				ConfigConstants.CONFIG_KEY_ALGORITHM, DiffAlgorithm.SupportedAlgorithm.HISTOGRAM);
+		return "renames=" + detectRenames + ",algorithm=" + algorithm;
+	}
+
+	private static void configureRenameDetection(DiffFormatter differencesBetweenCommits) {
+
+		if (DETECT_RENAMES != null) {
+			differencesBetweenCommits.setDetectRenames(Boolean.parseBoolean(DETECT_RENAMES));
+		}
+	}
+
+	// Calcola il diff tra il commit ed il suo primo parent, tenendo le linee cambiate delle sole classi java.
+	// Il filtro scarta gli altri file già durante la visita degli alberi, contandoli però nel ChgSetSize.
+	// Con il riconoscimento dei file rinominati attivo il filtro non viene usato: un file rinominato conta una
+	// volta sola nel ChgSetSize solo se la coppia cancellato/aggiunto viene riconosciuta tra tutti i file cambiati.
+	// Le linee cambiate di una coppia di blob già vista vengono prese dalla cache invece di rifare il diff.
+	private CommitRecord diffCommit(RevCommit commit, DiffFormatter differencesBetweenCommits) throws IOException {
+
+		// Prendo le differenze tra i due commit
+		boolean detectRenames = differencesBetweenCommits.getRenameDetector() != null;
+		ChangedFilesFilter changedFilesFilter = new ChangedFilesFilter();
+		differencesBetweenCommits.setPathFilter(detectRenames ? TreeFilter.ALL : changedFilesFilter);
+		List<DiffEntry> filesChanged = differencesBetweenCommits.scan(commit.getParent(0), commit);
+		int chgSetSize = detectRenames ? filesChanged.size() : changedFilesFilter.getChangedFiles();
+		List<CommitRecord.FileChange> fileChanges = new ArrayList<>();
+		int editCount = 0;
+		int cacheHits = 0;
+
+		// Per ogni file cambiato nella lista dei file cambiati
+		for (DiffEntry singleFile : filesChanged) {
+
+			// Ci riferiamo solo a classi java
+			if (singleFile.getNewPath().endsWith(FILE_EXTENSION)) {
+
+				ObjectId oldBlob = singleFile.getOldId().toObjectId();
+				ObjectId newBlob = singleFile.getNewId().toObjectId();
+				int[] linesChanged = diffCache.get(oldBlob, newBlob);
+				if (linesChanged == null) {
+					EditList edits = differencesBetweenCommits.toFileHeader(singleFile).toEditList();
+					linesChanged = JiraLogic.countChangedLines(edits);
+					editCount += edits.size();
+					diffCache.put(oldBlob, newBlob, linesChanged);
+				} else {
+					cacheHits++;
+				}
+				fileChanges.add(new CommitRecord.FileChange(singleFile.getNewPath(), singleFile.getChangeType(),
+						linesChanged[0], linesChanged[1]));
 			}
 		}
+		RunMetrics.count("diffs", 1);
+		RunMetrics.count("edits", editCount);
+		RunMetrics.count("diff_cache_hits", cacheHits);
+		return new CommitRecord(commit.getName(), chgSetSize, fileChanges);
+	}
+
+	// Filtro del diff di un commit: lascia passare solo i file java cambiati, ma conta tutti i file cambiati come
+	// li conterebbe DiffEntry.scan, cioè due volte un file che cambia tipo (es. da file a link simbolico).
+	private static class ChangedFilesFilter extends TreeFilter {
+
+		private int changedFiles;
+
+		@Override
+		public boolean include(TreeWalk walker) throws IOException {
+
+			if (!TreeFilter.ANY_DIFF.include(walker)) {
+				return false;
+			}
+			// Entro nelle cartelle cambiate per arrivare ai file
+			if (walker.isSubtree()) {
+				return true;
+			}
+			int oldMode = walker.getRawMode(0);
+			int newMode = walker.getRawMode(1);
+			boolean typeChanged = oldMode != 0 && newMode != 0 && (oldMode & FileMode.TYPE_MASK) != (newMode & FileMode.TYPE_MASK);
+			changedFiles += typeChanged ? 2 : 1;
+			return walker.getPathString().endsWith(FILE_EXTENSION);
+		}
+
+		@Override
+		public boolean shouldBeRecursive() {
+			return true;
+		}
 
+		@Override
+		public TreeFilter clone() {
+			return new ChangedFilesFilter();
+		}
+
+		int getChangedFiles() {
+			return changedFiles;
+		}
 	}
 	
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	public void writeCSVFile(String projectName, MultiKeyMap mapToBuildDataset, int latestVersion) throws IOException {
+	public void writeCSVFile(String projectName, MetricStore metricStore, int latestVersion) throws IOException {
 		
 		LoggerClass.infoLog("Inizio ufficialmente a scrivere il csv, dopo aver fatto tutti i calcoli dovuti");
 		
-		// Imposto il nome del file
-		try (FileWriter csvWriter = new FileWriter("csv/" + projectName + "_datasetDeliverableBuggyness.csv")) {
+		// Indice con la posizione delle righe di ogni versione, salvato accanto al csv
+		DatasetIndex datasetIndex = new DatasetIndex();
+
+		// Imposto il nome del file. Scrivo tramite un buffer grande, con lo stesso charset di FileWriter,
+		// contando i byte scritti per l'indice
+		CountingOutputStream csvBytes = new CountingOutputStream(
+				new BufferedOutputStream(new FileOutputStream(DatasetIndex.getDatasetFile(projectName).toFile()), CSV_BUFFER_SIZE));
+		try (Writer csvWriter = new BufferedWriter(new OutputStreamWriter(csvBytes, Charset.defaultCharset()), CSV_BUFFER_SIZE)) {
 
 			/*
 			 * Metriche prese in considerazione:
@@ -141,87 +482,170 @@ public class DatasetCreator {
 			 */
 
 			// La prima riga è il numero di versione
-			csvWriter.append("Version Number");
-			csvWriter.append(",");
-			csvWriter.append("Filename");
-			csvWriter.append(",");
-			csvWriter.append("LOC_Touched");
-			csvWriter.append(",");
-			csvWriter.append("Number_Revisions");
-			csvWriter.append(",");
-			csvWriter.append("NumberBugFix");
-			csvWriter.append(",");
-			csvWriter.append("LOC_Added");
-			csvWriter.append(",");
-			csvWriter.append("MAX_LOC_Added");
-			csvWriter.append(",");
-			csvWriter.append("ChgSetSize");
-			csvWriter.append(",");
-			csvWriter.append("Max_ChgSet");
-			csvWriter.append(",");
-			csvWriter.append("AVG_ChgSet");
-			csvWriter.append(",");
-			csvWriter.append("Avg_LOC_Added");
-			csvWriter.append(",");
-			csvWriter.append("Buggy");
-			csvWriter.append("\n");
-
-			Map<String, List<Integer>> monthsMap = new TreeMap<>();
-			String buggy;
-			int averageLOCAdded;
-			int averageChgSet;
-			
-			//Creo un iterator per esplorare la mappa che mi costruirà il dataset
-			MapIterator datasetIterator = mapToBuildDataset.mapIterator();
-
-			// Itero sul dataset
-			//Controllo inizialmente se ci sono elementi su cui iterare
-			while (datasetIterator.hasNext()) {
-				//Mi prendo la prossima chiave nell'iterazione
-				datasetIterator.next();
-				MultiKey key = (MultiKey) datasetIterator.getKey();
-
-				// Prendo la lista di metriche associate alla multikey
-				ArrayList<Integer> fileMetrics = (ArrayList<Integer>) mapToBuildDataset.get(key.getKey(0), key.getKey(1));
-				
-				//Inserisco in monthsMap: --> [versione, nomefile, listadellemetriche] ---> ordine alfanumerico
-				
-				monthsMap.put(String.valueOf(key.getKey(0)) + "," + (String) key.getKey(1), fileMetrics);
-			}
+			csvWriter.write(CSV_HEADER);
 
-			for (Map.Entry<String, List<Integer>> mapEntry : monthsMap.entrySet()) {
+			// Ordino una sola volta tutti i file per path, poi per ogni versione solo quelli presenti
+			PathOrder pathOrder = new PathOrder(metricStore);
+			char[] digits = new char[11];
 
-				ArrayList<Integer> fileMetrics = (ArrayList<Integer>) mapEntry.getValue();
-				
-				// Controllo che l'indice della versione sia contenuto nella prima metà delle
-				// release
-				if (Integer.valueOf(mapEntry.getKey().split(",")[0]) <= (latestVersion) + 1) {
-					//Setto la buggyness vedendo il valore dell'ultima colonna
-					if (fileMetrics.get(9).equals(0))
-						buggy = "No";
-					else
-						buggy = "Yes";
-
-					if (fileMetrics.get(1).equals(0)) {
-						averageLOCAdded = 0;
-						averageChgSet = 0;
-					} else {
-						//Calcolo l'AvgLocAdded e l'AvgChgSet
-						averageLOCAdded = fileMetrics.get(5) / fileMetrics.get(1);
-						averageChgSet = fileMetrics.get(3) / fileMetrics.get(1);
-					}
+			for (int version : getDatasetVersions(metricStore, latestVersion)) {
 
-					// Scrivo i dati sul file CSV
-					csvWriter.append(mapEntry.getKey().split(",")[0] + "," + mapEntry.getKey().split(",")[1] + ","
-							+ fileMetrics.get(0) + "," + fileMetrics.get(1) + "," + fileMetrics.get(2) + ","
-							+ fileMetrics.get(3) + "," + fileMetrics.get(4) + "," + fileMetrics.get(5) + ","
-							+ fileMetrics.get(6) + "," + averageLOCAdded + "," + averageChgSet + "," + buggy);
+				csvWriter.flush();
+				long offset = csvBytes.getCount();
+				int rows = 0;
+				int defective = 0;
 
-					csvWriter.append("\n");
+				for (int fileId : pathOrder.getFileIds(version)) {
+					writeCSVRow(csvWriter, metricStore, version, fileId, digits);
+					rows++;
+					if (metricStore.isBuggy(version, fileId)) {
+						defective++;
+					}
 				}
+
+				csvWriter.flush();
+				datasetIndex.add(new DatasetIndex.VersionRange(version, offset, (int) (csvBytes.getCount() - offset), rows, defective));
+				RunMetrics.count("rows", rows);
 			}
 			csvWriter.flush();
 		}
+
+		// L'indice viene scritto dopo il csv, così non risulta mai più vecchio del csv a cui si riferisce
+		datasetIndex.save(DatasetIndex.getIndexFile(projectName));
 	}
-	
+
+	// Conta i byte scritti nel csv, per sapere dove iniziano le righe di ogni versione
+	private static class CountingOutputStream extends FilterOutputStream {
+
+		private long count;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		long getCount() {
+			return count;
+		}
+	}
+
+	// Scrive una riga del dataset campo per campo, senza costruire la stringa della riga
+	private static void writeCSVRow(Writer csvWriter, MetricStore metricStore, int version, int fileId, char[] digits)
+			throws IOException {
+
+		int revisions = metricStore.getNumberRevisions(version, fileId);
+		int chgSetSize = metricStore.getChgSetSize(version, fileId);
+		int locAdded = metricStore.getLocAdded(version, fileId);
+
+		writeInt(csvWriter, version, digits);
+		csvWriter.write(',');
+		csvWriter.write(metricStore.getPath(fileId));
+		csvWriter.write(',');
+		writeInt(csvWriter, metricStore.getLocTouched(version, fileId), digits);
+		csvWriter.write(',');
+		writeInt(csvWriter, revisions, digits);
+		csvWriter.write(',');
+		writeInt(csvWriter, metricStore.getNumberBugFix(version, fileId), digits);
+		csvWriter.write(',');
+		writeInt(csvWriter, locAdded, digits);
+		csvWriter.write(',');
+		writeInt(csvWriter, metricStore.getMaxLocAdded(version, fileId), digits);
+		csvWriter.write(',');
+		writeInt(csvWriter, chgSetSize, digits);
+		csvWriter.write(',');
+		writeInt(csvWriter, metricStore.getMaxChgSet(version, fileId), digits);
+		csvWriter.write(',');
+		//Calcolo l'AvgLocAdded e l'AvgChgSet, 0 se il file non ha revisioni
+		writeInt(csvWriter, revisions == 0 ? 0 : chgSetSize / revisions, digits);
+		csvWriter.write(',');
+		writeInt(csvWriter, revisions == 0 ? 0 : locAdded / revisions, digits);
+		csvWriter.write(',');
+		//Setto la buggyness
+		csvWriter.write(metricStore.isBuggy(version, fileId) ? "Yes" : "No");
+		csvWriter.write('\n');
+	}
+
+	// Scrive le cifre dell'intero usando il buffer passato, senza creare una stringa
+	private static void writeInt(Writer writer, int value, char[] digits) throws IOException {
+
+		long remaining = Math.abs((long) value);
+		int position = digits.length;
+		do {
+			digits[--position] = (char) ('0' + remaining % 10);
+			remaining /= 10;
+		} while (remaining != 0);
+		if (value < 0) {
+			digits[--position] = '-';
+		}
+		writer.write(digits, position, digits.length - position);
+	}
+
+	// Le versioni del dataset nell'ordine del csv: ordinate come le stringhe "versione,nomefile" ---> ordine
+	// alfanumerico, e solo quelle contenute nella prima metà delle release
+	public static List<Integer> getDatasetVersions(MetricStore metricStore, int latestVersion) {
+
+		List<Integer> versions = new ArrayList<>();
+		for (int version : metricStore.getVersions()) {
+			if (version <= (latestVersion) + 1) {
+				versions.add(version);
+			}
+		}
+		versions.sort(Comparator.comparing(String::valueOf));
+		return versions;
+	}
+
+	// Ordine dei file per path: tutti i path vengono ordinati una sola volta, poi per ogni versione si ordinano
+	// per posizione solo gli ID dei file che ci sono, invece di scorrere ogni volta tutti i file dello store
+	public static final class PathOrder {
+
+		private final MetricStore metricStore;
+
+		// ID dei file in ordine di path e, per ogni ID, la sua posizione in quell'ordine
+		private final int[] fileIdsByPath;
+		private final int[] pathRanks;
+
+		public PathOrder(MetricStore metricStore) {
+
+			this.metricStore = metricStore;
+
+			Integer[] fileIds = new Integer[metricStore.getFileCount()];
+			for (int fileId = 0; fileId < fileIds.length; fileId++) {
+				fileIds[fileId] = fileId;
+			}
+			Arrays.sort(fileIds, Comparator.comparing(metricStore::getPath));
+
+			fileIdsByPath = new int[fileIds.length];
+			pathRanks = new int[fileIds.length];
+			for (int rank = 0; rank < fileIds.length; rank++) {
+				fileIdsByPath[rank] = fileIds[rank];
+				pathRanks[fileIds[rank]] = rank;
+			}
+		}
+
+		// Gli ID dei file con un record nella versione, in ordine di path
+		public int[] getFileIds(int version) {
+
+			int[] fileIds = metricStore.getFileIds(version);
+			for (int i = 0; i < fileIds.length; i++) {
+				fileIds[i] = pathRanks[fileIds[i]];
+			}
+			Arrays.sort(fileIds);
+			for (int i = 0; i < fileIds.length; i++) {
+				fileIds[i] = fileIdsByPath[fileIds[i]];
+			}
+			return fileIds;
+		}
+	}
+
 }
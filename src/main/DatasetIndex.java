@@ -0,0 +1,122 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Indice del dataset scritto da DatasetCreator.writeCSVFile: le righe di ciascuna versione sono contigue nel csv,
+// e per ogni versione l'indice dice da che byte partono, quanti byte occupano, quante righe sono e quante buggy.
+// Così chi legge il dataset per il walk forward salta direttamente alle versioni che gli servono.
+public class DatasetIndex {
+
+	private static final String INDEX_HEADER = "Version,Offset,Length,Rows,Defective";
+
+	// Righe di una versione nel csv
+	public static class VersionRange {
+
+		private final int version;
+		private final long offset;
+		private final int length;
+		private final int rows;
+		private final int defective;
+
+		public VersionRange(int version, long offset, int length, int rows, int defective) {
+
+			this.version = version;
+			this.offset = offset;
+			this.length = length;
+			this.rows = rows;
+			this.defective = defective;
+		}
+
+		public int getVersion() {
+			return version;
+		}
+
+		// Posizione in byte della prima riga della versione
+		public long getOffset() {
+			return offset;
+		}
+
+		// Byte occupati dalle righe della versione
+		public int getLength() {
+			return length;
+		}
+
+		public int getRows() {
+			return rows;
+		}
+
+		public int getDefective() {
+			return defective;
+		}
+	}
+
+	// Versioni nell'ordine in cui compaiono nel csv
+	private final List<VersionRange> ranges = new ArrayList<>();
+
+	public void add(VersionRange range) {
+		ranges.add(range);
+	}
+
+	public List<VersionRange> getRanges() {
+		return Collections.unmodifiableList(ranges);
+	}
+
+	public static Path getDatasetFile(String projectName) {
+		return Paths.get("csv", projectName + "_datasetDeliverableBuggyness.csv");
+	}
+
+	public static Path getIndexFile(String projectName) {
+		return Paths.get("csv", projectName + "_datasetDeliverableBuggyness.idx");
+	}
+
+	public void save(Path indexFile) throws IOException {
+
+		try (Writer indexWriter = new BufferedWriter(new FileWriter(indexFile.toFile()))) {
+
+			indexWriter.write(INDEX_HEADER + "\n");
+			for (VersionRange range : ranges) {
+				indexWriter.write(range.getVersion() + "," + range.getOffset() + "," + range.getLength() + ","
+						+ range.getRows() + "," + range.getDefective() + "\n");
+			}
+		}
+	}
+
+	// Carica l'indice del dataset del progetto, o ritorna null se manca o se è più vecchio del csv
+	// (ad esempio un csv scritto senza indice): in quel caso il dataset va letto tutto
+	public static DatasetIndex loadFor(String projectName) throws IOException {
+
+		Path datasetFile = getDatasetFile(projectName);
+		Path indexFile = getIndexFile(projectName);
+		if (!Files.exists(indexFile) || !Files.exists(datasetFile)
+				|| Files.getLastModifiedTime(indexFile).compareTo(Files.getLastModifiedTime(datasetFile)) < 0) {
+			return null;
+		}
+
+		DatasetIndex index = new DatasetIndex();
+		try (BufferedReader reader = new BufferedReader(new FileReader(indexFile.toFile()))) {
+
+			String line = reader.readLine();
+			if (!INDEX_HEADER.equals(line)) {
+				return null;
+			}
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split(",");
+				index.add(new VersionRange(Integer.parseInt(fields[0]), Long.parseLong(fields[1]),
+						Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+			}
+		}
+		return index;
+	}
+
+}
@@ -1,49 +1,177 @@
 package main;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
+// Log del programma. Console e file vengono scritti da un thread a parte (AsyncLogHandler), così i thread che
+// analizzano commit e fold non aspettano mai l'I/O del log. I messaggi con parametri ("{}") vengono formattati
+// solo se il livello è attivo, ed il file ruota quando raggiunge la dimensione massima.
+//
+// -DlogLevel=INFO            livello minimo dei messaggi (es. WARNING per tenere solo errori ed avvisi)
+// -DlogFile=LoggerClass.log  file del log; con la rotazione il file corrente è LoggerClass.log.0
+// -DlogMaxMB=10, -DlogFiles=5    dimensione massima di ogni file e numero di file tenuti
+// -DlogBufferSize=8192       record in attesa di essere scritti, oltre i quali vengono scartati
+// -DlogProgressSeconds=5     intervallo minimo tra due messaggi di avanzamento
 public class LoggerClass {
-	
+
 private LoggerClass() {
-		
+
 		throw new IllegalStateException("There are many problems in LoggerClass.java");
 	}
-	
-	private static final Logger Log = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME );     
-    
+
+	private static final Logger Log = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME );
+
+	private static final Level LOG_LEVEL = Level.parse(System.getProperty("logLevel", "INFO"));
+	private static final String LOG_FILE = System.getProperty("logFile", "LoggerClass.log");
+	private static final int LOG_MAX_BYTES = Integer.getInteger("logMaxMB", 10) * 1024 * 1024;
+	private static final int LOG_FILES = Integer.getInteger("logFiles", 5);
+	private static final int LOG_BUFFER_SIZE = Integer.getInteger("logBufferSize", 8192);
+	private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("logProgressSeconds", 5));
+
+	private static final String PLACEHOLDER = "{}";
+
+	// Handler asincrono impostato da setupLogger; prima i messaggi vengono formattati subito
+	private static volatile AsyncLogHandler asyncHandler;
+
     //Mi imposto il logger
 	public static void setupLogger() {
-    	
+
         LogManager.getLogManager().reset();
-        Log.setLevel(Level.ALL);
-        
+        Log.setLevel(LOG_LEVEL);
+
         ConsoleHandler consoleHandler = new ConsoleHandler();
         consoleHandler.setLevel(Level.FINE);
-        Log.addHandler(consoleHandler);
 
+        Handler[] targets = { consoleHandler };
         try {
-            FileHandler fileHandler = new FileHandler("LoggerClass.log", true);
+            FileHandler fileHandler = new FileHandler(LOG_FILE, LOG_MAX_BYTES, LOG_FILES, true);
             fileHandler.setLevel(Level.FINE);
-            Log.addHandler(fileHandler);
-        } catch (java.io.IOException e) {            
-        	Log.log(Level.SEVERE, "CATCH BLOCK: There are problems in the file logger!!!", e);
+            targets = new Handler[] { consoleHandler, fileHandler };
+        } catch (java.io.IOException e) {
+        	consoleHandler.publish(new LogRecord(Level.SEVERE, "CATCH BLOCK: There are problems in the file logger!!! " + e));
         }
-        
-    } 
-	
+
+        // reset() ha già chiuso l'eventuale handler di un setupLogger precedente
+        AsyncLogHandler handler = new AsyncLogHandler(Arrays.asList(targets), LOG_BUFFER_SIZE);
+        Log.addHandler(handler);
+        asyncHandler = handler;
+    }
+
 	public static void errorLog(String message) {
-    	
-    	Log.severe(message);
+
+    	log(Level.SEVERE, "errorLog", message, null);
     }
-    
+
     public static void infoLog(String message ) {
-    	
-    	Log.info(message);
+
+    	log(Level.INFO, "infoLog", message, null);
+    }
+
+    // Messaggio con parametri al posto dei "{}", formattato solo se il livello INFO è attivo
+    public static void infoLog(String format, Object... parameters) {
+
+    	log(Level.INFO, "infoLog", format, parameters);
+    }
+
+    public static void errorLog(String format, Object... parameters) {
+
+    	log(Level.SEVERE, "errorLog", format, parameters);
+    }
+
+    // Messaggio costruito solo se il livello INFO è attivo
+    public static void infoLog(Supplier<String> message) {
+
+    	if (Log.isLoggable(Level.INFO)) {
+    		log(Level.INFO, "infoLog", message.get(), null);
+    	}
+    }
+
+    public static boolean isInfoEnabled() {
+    	return Log.isLoggable(Level.INFO);
+    }
+
+    private static void log(Level level, String method, String message, Object[] parameters) {
+
+    	if (!Log.isLoggable(level)) {
+    		return;
+    	}
+
+    	// Sorgente fissa, come quando i record venivano scritti dal thread chiamante
+    	LogRecord logRecord = new LogRecord(level, message);
+    	logRecord.setSourceClassName(LoggerClass.class.getName());
+    	logRecord.setSourceMethodName(method);
+    	logRecord.setLoggerName(Log.getName());
+    	logRecord.setParameters(parameters);
+    	if (asyncHandler == null) {
+    		formatParameters(logRecord);
+    	}
+    	Log.log(logRecord);
+    }
+
+    // Sostituisce i "{}" del messaggio con i parametri del record, nell'ordine; i parametri in più vengono ignorati
+    static void formatParameters(LogRecord logRecord) {
+
+    	Object[] parameters = logRecord.getParameters();
+    	if (parameters == null || parameters.length == 0) {
+    		return;
+    	}
+
+    	String format = logRecord.getMessage();
+    	StringBuilder message = new StringBuilder(format.length() + 16 * parameters.length);
+    	int start = 0;
+    	for (Object parameter : parameters) {
+    		int placeholder = format.indexOf(PLACEHOLDER, start);
+    		if (placeholder < 0) {
+    			break;
+    		}
+    		message.append(format, start, placeholder).append(parameter);
+    		start = placeholder + PLACEHOLDER.length();
+    	}
+    	message.append(format, start, format.length());
+
+    	logRecord.setMessage(message.toString());
+    	logRecord.setParameters(null);
+    }
+
+    // Avanzamento di un lavoro con molti passi, anche da più thread: scrive "messaggio: fatti/totale" al massimo
+    // una volta ogni -DlogProgressSeconds, invece di un messaggio per passo
+    public static Progress progress(String message, long total) {
+    	return new Progress(message, total);
+    }
+
+    public static final class Progress {
+
+    	private final String message;
+    	private final long total;
+    	private final AtomicLong done = new AtomicLong();
+    	private final AtomicLong nextLogNanos;
+
+    	private Progress(String message, long total) {
+
+    		this.message = message;
+    		this.total = total;
+    		this.nextLogNanos = new AtomicLong(System.nanoTime() + PROGRESS_INTERVAL_NANOS);
+    	}
+
+    	public void step() {
+
+    		long completed = done.incrementAndGet();
+    		long now = System.nanoTime();
+    		long next = nextLogNanos.get();
+    		// Solo il thread che sposta in avanti la prossima scadenza scrive il messaggio
+    		if (now - next >= 0 && nextLogNanos.compareAndSet(next, now + PROGRESS_INTERVAL_NANOS)) {
+    			infoLog("{}: {}/{}", message, completed, total);
+    		}
+    	}
     }
-    
 
 }
@@ -1,37 +1,39 @@
 package main;
 
-import org.apache.commons.collections4.map.LinkedMap;
-import org.apache.commons.collections4.map.MultiKeyMap;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.util.FileUtils;
+import org.eclipse.jgit.lib.Repository;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import logic.HttpResponseCache;
 import logic.JiraLogic;
+import logic.JiraSearchFetcher;
+import logic.MetricStore;
 import logic.ParserJson;
+import logic.ProportionEstimator;
+import machine_learning.DatasetInstances;
+import machine_learning.EvaluationLogic;
+import machine_learning.FinalEvaluation;
 
 public class MainActivity {
 	
 	private static JiraLogic jiraLogic;
 
-	// MultiKeyMap<Versione del file, percorso del file, lista delle metriche>
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private static MultiKeyMap mapToBuildDataset = MultiKeyMap.multiKeyMap(new LinkedMap());
+	// Metriche per ogni coppia (versione del file, percorso del file)
+	private static MetricStore metricStore = new MetricStore();
 
 	// Mappa<,Id del ticket (Injected Version, Fixed Version)>
 	private static List<Integer> ticketsList;
@@ -41,20 +43,61 @@ public class MainActivity {
 	public static final String RELEASE_DATE = "releaseDate";
 	public static final String FILE_EXTENSION = ".java";
 
-	public static void main(String[] args) throws IOException, JSONException, GitAPIException {
-		
-		// Indice dell'ultimissima versione prendibile in considerazione
-		int latestVersion;
+	// Ticket per pagina nella ricerca di Jira, il massimo consentito
+	public static final int JIRA_PAGE_SIZE = 1000;
+	private static final String JIRA_SEARCH_URL = "https://issues.apache.org/jira/rest/api/2/search?jql=";
+
+	// Formato delle date nelle query JQL e margine sull'ultima sincronizzazione dei ticket
+	private static final DateTimeFormatter JQL_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm");
+	private static final Duration SYNC_MARGIN = Duration.ofDays(1);
+
+	// Numero di thread per l'analisi dei commit, impostabile con -DcommitWorkers=N (1 = analisi seriale)
+	private static final int COMMIT_WORKERS = Integer.getInteger("commitWorkers", Runtime.getRuntime().availableProcessors());
+
+	// Cartella dove salvo, per ogni progetto, il registro dei commit già analizzati (-DdatasetState=...)
+	private static final String DATASET_STATE_DIRECTORY = System.getProperty("datasetState", "state");
+
+	// Pagine della ricerca di Jira scaricate in parallelo (-DjiraParallelism) e limite di richieste al secondo
+	// verso Jira (-DjiraRequestsPerSecond)
+	private static final int JIRA_PARALLELISM = Integer.getInteger("jiraParallelism", 4);
+	private static final double JIRA_REQUESTS_PER_SECOND = Double.parseDouble(System.getProperty("jiraRequestsPerSecond", "10"));
+
+	// -DjiraFullSync=true scarica di nuovo tutti i ticket invece dei soli aggiornati dall'ultima sincronizzazione.
+	// Con -DhttpCacheMode=replay la sincronizzazione è sempre completa: la ricerca dei ticket aggiornati
+	// dipende dalla data dell'ultima sincronizzazione e non può essere nella cache registrata.
+	private static final boolean JIRA_FULL_SYNC = Boolean.getBoolean("jiraFullSync");
+
+	// -DinMemoryEvaluation=true valuta i classificatori nello stesso run, passando a Weka le metriche in memoria;
+	// -DwriteCsv=false non scrive il csv del dataset (che resta necessario per EvaluationLogic e FinalEvaluation)
+	private static final boolean IN_MEMORY_EVALUATION = Boolean.getBoolean("inMemoryEvaluation");
+	private static final boolean WRITE_CSV = Boolean.parseBoolean(System.getProperty("writeCsv", "true"));
+
+	// Strategia di proportion, impostabile con -Dproportion=increment | window:N | coldstart:P
+	private static final String PROPORTION_STRATEGY = System.getProperty("proportion", "increment");
+
+	// Progetti da svolgere, separati da virgola, impostabili con -Dprojects (ad esempio un progetto sintetico)
+	private static final String PROJECTS = System.getProperty("projects", "BOOKKEEPER,OPENJPA");
+
+	public static void main(String[] args) throws Exception {
 
 		Map<Integer, List<Integer>> ticketsWithBuggyIndex;
 
 		// nomi dei progetti da svolgere, inserire entrambi uno dopo l'altro o uno alla volta
-		String[] projectList = { "BOOKKEEPER", "OPENJPA" };
+		String[] projectList = PROJECTS.split(",");
 		
 		//Inizializzo il logger
 		LoggerClass.setupLogger();
 		LoggerClass.infoLog("Avvio il programma per la creazione del dataset...");
 
+		// Fold dei progetti per la valutazione in memoria
+		List<DatasetInstances> inMemoryFolds = new ArrayList<>();
+
+		// Cache delle repository, riusata tra un run e l'altro
+		RepositoryCache repositoryCache = RepositoryCache.fromSystemProperties();
+
+		// Cache su disco delle risposte di Jira (registrazione e replay di un run con -DhttpCacheMode)
+		ParserJson.setResponseCache(HttpResponseCache.fromSystemProperties());
+
 		for (String projectName : projectList) {
 
 			ticketsWithBuggyIndex = new HashMap<>();
@@ -64,66 +107,70 @@ public class MainActivity {
 			Multimap<LocalDate, String> versionListWithReleaseDate = MultimapBuilder.treeKeys().linkedListValues().build();
 
 			// Prendo la lista delle versioni con la data della release, formato: 2006-08-26=[0.9.0, 1]
-			versionListWithReleaseDate = getVersionAndReleaseDate(projectName);
+			versionListWithReleaseDate = RunMetrics.time("version_fetch", () -> getVersionAndReleaseDate(projectName));
 			
 			// Scrivo la repository del progetto in questione, da github
 			String projectRepository = "https://github.com/apache/" + projectName + ".git";
 
-			jiraLogic = new JiraLogic(versionListWithReleaseDate, mapToBuildDataset, ticketsWithBuggyIndex, ticketsList);
+			jiraLogic = new JiraLogic(versionListWithReleaseDate, metricStore, ticketsWithBuggyIndex, ticketsList);
+			jiraLogic.setProportionEstimator(ProportionEstimator.fromDescription(PROPORTION_STRATEGY));
 			
 			//Prendo la prima metà delle versioni!
 			//Effettuo questa doppia divisione perché la size di una Multimap viene raddoppiata (key, value).
 			//Per esempio, per Bookkeeper, ho 14 versioni totali, ma la size di versionListWithReleaseDate esce 28.
 			//Per questo, per prendere solo la prima metà delle release, è come se dividessi per 4.
-			latestVersion = (versionListWithReleaseDate.size()/2)/2;
-
-			// Clono la repo nella cartella projectName, commenta questa linea di codice se il progetto è già
-			// stato scaricato e non cancellato (il programma è stato interrotto prima di terminare)
-			Git.cloneRepository().setURI(projectRepository).setDirectory(new File(projectName)).call();
-
-			// Prendo tutti i file nella repo
-			try (Stream<File> fileStream = Files
-					.walk(Paths.get(System.getProperty(USER_DIRECTORY) + "/" + projectName + "/"))
-					.filter(Files::isRegularFile).map(Path::toFile)) {
-
-				List<File> filesInFolder = fileStream.collect(Collectors.toList());
-				
-				// Per ogni file Java nella cartella
-				for (File f : filesInFolder) {
-					if (f.toString().endsWith(FILE_EXTENSION)) {
-
-						// metto la coppia (versione, pathname del file) nella map del dataset
-						// putEmptyRecord aggiunge la lista di metriche azzerate per ogni file nella versione
-						for (int i = 1; i < (latestVersion) + 1; i++) {
-							jiraLogic.putEmptyRecord(i, f.toString().replace(
-									Paths.get(System.getProperty(USER_DIRECTORY)).toString() + "/" + projectName + "/",
-									""));
-						}
-					}
-				}
-			}
+			int latestVersion = (versionListWithReleaseDate.size()/2)/2;
 
 			// Trovo gli indici delle IV e delle FV per i ticket con le AV di Jira
-			getBuggyVersionAVTicket(projectName);
+			RunMetrics.time("jira_search", () -> getBuggyVersionAVTicket(projectName));
 
 			// Trovo gli indici delle IV e delle FV per i ticket senza le AV riportate su
 			// Jira
 			// e che richiedono l'applicazione del metodo proportion
-			jiraLogic.getBuggyVersionProportionTicket();
-
-			// Costruisco il dataset, partendo dall'oggetto dataBuilder
-			DatasetCreator dataBuilder= new DatasetCreator();
-			//passo al metodo il nome del progetto, l'istanza di JiraLogic, l'indice dell'ultima versione
-			//e la mappa dove andrò a costruire il dataset
-			dataBuilder.buildDatasetUp(projectName, jiraLogic, latestVersion, mapToBuildDataset);
-			// Scrivo il dataset in un file CSV
-			dataBuilder.writeCSVFile(projectName, mapToBuildDataset, latestVersion);
+			RunMetrics.time("labeling", () -> jiraLogic.getBuggyVersionProportionTicket());
+
+			// Prendo la repo del progetto dalla cache locale: viene scaricata solo la prima volta,
+			// poi aggiornata, oppure presa da un percorso locale senza accedere alla rete
+			try (Repository repository = repositoryCache.open(projectName, projectRepository)) {
+
+				// Costruisco il dataset, partendo dall'oggetto dataBuilder
+				DatasetCreator dataBuilder = new DatasetCreator(repository);
+
+				// Per ogni versione metto la coppia (versione, pathname del file) nella map del dataset,
+				// per tutte le classi java presenti nell'albero della release.
+				// putEmptyRecord aggiunge la lista di metriche azzerate per ogni file nella versione
+				RunMetrics.time("file_universe", () -> dataBuilder.putReleaseFileUniverse(projectName, jiraLogic, latestVersion));
+
+				//passo al metodo il nome del progetto, l'istanza di JiraLogic, l'indice dell'ultima versione,
+				//la mappa dove andrò a costruire il dataset, il numero di thread per l'analisi dei commit
+				//ed il registro dei commit già analizzati nei run precedenti
+				Path ledgerFile = Paths.get(DATASET_STATE_DIRECTORY, projectName + "_commits.ledger");
+				CommitLedger ledger = CommitLedger.load(ledgerFile);
+				RunMetrics.time("commit_walk",
+						() -> dataBuilder.buildDatasetUp(projectName, jiraLogic, latestVersion, metricStore, COMMIT_WORKERS, ledger));
+				ledger.save(ledgerFile);
+				// Scrivo il dataset in un file CSV
+				if (WRITE_CSV) {
+					RunMetrics.time("csv_write", () -> dataBuilder.writeCSVFile(projectName, metricStore, latestVersion));
+				}
+			}
+
+			// Tengo i fold del walk forward in memoria, per valutarli alla fine senza rileggere csv e .arff
+			if (IN_MEMORY_EVALUATION) {
+				inMemoryFolds.add(new DatasetInstances(projectName, metricStore, latestVersion));
+			}
 			
 			LoggerClass.infoLog("Ho terminato di creare il dataset.");
-			// A fine utilizzo, cancello la cartella con la repo del progetto
-			FileUtils.delete(new File(projectName), 1);
 		}
 
+		if (IN_MEMORY_EVALUATION) {
+			EvaluationLogic.evaluateProjects(inMemoryFolds);
+			FinalEvaluation.evaluateProjects(inMemoryFolds);
+			LoggerClass.infoLog("Ho terminato la valutazione dei classificatori.");
+		}
+
+		// Durate delle fasi, contatori e picco di heap del run, per confrontarlo con i precedenti
+		RunMetrics.write();
 	}
 
 	
@@ -136,11 +183,8 @@ public class MainActivity {
 		Multimap<LocalDate, String> versionsList = MultimapBuilder.treeKeys().linkedListValues().build();
 		String releaseName = null;
 
-		// Url per prendere le informazioni associate al progetto in Jira
-		String url = "https://issues.apache.org/jira/rest/api/2/project/" + projectName;
-		
 		//Mi vengono stampati tutti i JSONObject con le informazioni da Jira
-		JSONObject json = ParserJson.readJsonFromUrl(url);
+		JSONObject json = ParserJson.readJsonFromUrl(getProjectUrl(projectName));
 		
 		LoggerClass.infoLog("Inizio a prendere le versioni e le date delle release...");
 
@@ -176,56 +220,109 @@ public class MainActivity {
 	}
 	
 	//Utilizzo il codice del professore, RetrieveTicketsID, per cercare i ticket con bug chiusi o risolti,
-	//con resolution fixed da Jira
+	//con resolution fixed da Jira. I ticket vengono salvati in locale: al primo run li scarico tutti,
+	//ai successivi solo quelli aggiornati dall'ultima sincronizzazione.
 	public static void getBuggyVersionAVTicket(String projectName) throws IOException, JSONException {
 
-		Integer j = 0;
-		Integer i = 0;
-		Integer total = 1;
-		String key = null;
-		
-		LoggerClass.infoLog("Inizio a cercare i ticket con bug, chiusi o risolti, con resolution fixed, da Jira...");
-		// Get JSON API for closed bugs w/ AV in the project
-		do {
-			// Only gets a max of 1000 at a time, so must do this multiple times if bugs
-			// >1000
-			j = i + 1000;
-			String url = "https://issues.apache.org/jira/rest/api/2/search?jql=project=%22" + projectName
-					+ "%22AND%22issueType%22=%22Bug%22AND(%22status%22=%22closed%22OR"
-					+ "%22status%22=%22resolved%22)AND%22resolution%22=%22fixed%22&fields=key,versions,resolutiondate,created,fixVersions&startAt="
-					+ i.toString() + "&maxResults=1000";
-			JSONObject json = ParserJson.readJsonFromUrl(url);
-			JSONArray issues = json.getJSONArray("issues");
-			total = json.getInt("total");
-
-			// Per ogni ticket chiuso
-			for (; i < total && i < j; i++) {
-
-				JSONObject singleJsonObject = (JSONObject) issues.getJSONObject(i % 1000).get("fields");
-				
-				// Mi prendo la chiave, ossia il ticket ID
-				key = issues.getJSONObject(i % 1000).get("key").toString();
-				// ed il JSONArray associato alle Affected Version
-				JSONArray affectedVersionArray = singleJsonObject.getJSONArray("versions");
-				//Aggiungo alla lista dei ticket l'ID dello stesso, splittandolo dalla chiave che riporta "NOME-#intero"
-				ticketsList.add(Integer.valueOf(key.split("-")[1]));
-				
-				// Estraggo una lista Java dal JSONArray per prendermi la lista delle affected versions
-				List<String> affectedVersionList = jiraLogic.getJsonAVList(affectedVersionArray);
+		Path storeFile = Paths.get(DATASET_STATE_DIRECTORY, projectName + "_tickets.store");
+		boolean fullSync = JIRA_FULL_SYNC || ParserJson.getResponseCacheMode() == HttpResponseCache.Mode.REPLAY;
+		TicketStore ticketStore = fullSync ? new TicketStore() : TicketStore.load(storeFile);
+
+		// Only gets a max of 1000 at a time, so must do this multiple times if bugs >1000.
+		// Le pagine vengono scaricate in parallelo, ma ogni ticket viene elaborato nell'ordine della ricerca
+		JiraSearchFetcher fetcher = new JiraSearchFetcher(JIRA_PARALLELISM, JIRA_REQUESTS_PER_SECOND);
+
+		if (ticketStore.getLastSync() < 0) {
+			LoggerClass.infoLog("Inizio a cercare i ticket con bug, chiusi o risolti, con resolution fixed, da Jira...");
+			fetcher.fetch(getFixedBugsSearchUrl(projectName), JIRA_PAGE_SIZE, issue -> ticketStore.put(getFixedBugTicket(issue)));
+		} else {
+			// Margine di un giorno sull'ultima sincronizzazione, perché Jira interpreta la data nel suo fuso orario
+			String updatedSince = Instant.ofEpochMilli(ticketStore.getLastSync()).minus(SYNC_MARGIN).atZone(ZoneOffset.UTC)
+					.format(JQL_DATE_FORMAT).replace(" ", "%20");
+			LoggerClass.infoLog("Cerco su Jira i bug aggiornati dal {}...", updatedSince);
+
+			// Tutti i bug aggiornati, anche quelli che non sono più chiusi o fixed e vanno tolti dallo store
+			String url = JIRA_SEARCH_URL + "project=%22" + projectName + "%22AND%22issueType%22=%22Bug%22AND%22updated%22%3E=%22"
+					+ updatedSince + "%22&fields=key,versions,resolutiondate,created,fixVersions,status,resolution";
+
+			fetcher.fetch(url, JIRA_PAGE_SIZE, issue -> {
+				if (isFixedBug(issue)) {
+					ticketStore.put(getFixedBugTicket(issue));
+				} else {
+					ticketStore.remove(getTicketID(issue));
+				}
+			});
+		}
 
-				// Calcolo l'indice delle Affected Version del ticket [InjectedVersion,FixedVersion)
-				
-				//Lo split viene eseguito sulla "T" e viene preso il primo elemento perché è la data, dopo ci sarebbe l'ora,
-				// che ignoro perché inutile per i nostri calcoli. Sto passando la lista delle affectedVersion, la resolutionDate,
-				// la data di creazione del ticket e l'ID dello stesso. Da qui inizio a calcolare anche proportion per i ticket
-				// con versioni valide.
-				jiraLogic.getBuggyVersionJiraAVList(affectedVersionList,
-						singleJsonObject.getString("resolutiondate").split("T")[0],
-						singleJsonObject.getString("created").split("T")[0], Integer.parseInt(key.split("-")[1]));
+		// La sincronizzazione vale dal momento in cui Jira ha dato la pagina più vecchia, che con la cache delle
+		// risposte può essere molto prima di questo run
+		ticketStore.setLastSync(fetcher.getOldestResponseMillis());
+		ticketStore.save(storeFile);
+		RunMetrics.count("tickets", ticketStore.size());
+		LoggerClass.infoLog("Ticket aggiornati da Jira: {}, ticket salvati: {}", ticketStore.getChangedTickets(), ticketStore.size());
+
+		// Per ogni ticket chiuso
+		for (TicketStore.Ticket ticket : ticketStore.getTickets()) {
+
+			//Aggiungo alla lista dei ticket l'ID dello stesso
+			ticketsList.add(ticket.getTicketID());
+
+			// Calcolo l'indice delle Affected Version del ticket [InjectedVersion,FixedVersion).
+			// Sto passando la lista delle affectedVersion, la resolutionDate, la data di creazione del ticket
+			// e l'ID dello stesso. Da qui inizio a calcolare anche proportion per i ticket con versioni valide.
+			// Le Affected Version salvate vengono filtrate con le release lette in questo run, perché una
+			// versione può essere stata rilasciata dopo l'ultima volta che il ticket è stato scaricato.
+			List<String> affectedVersionList = jiraLogic.getReleasedAVList(ticket.getAffectedVersions());
+			jiraLogic.getBuggyVersionJiraAVList(affectedVersionList, ticket.getResolutionDate(),
+					ticket.getCreationDate(), ticket.getTicketID());
+		}
+	}
 
-			}
-		} while (i < total);
+	// Url di Jira con le informazioni del progetto, tra cui le versioni
+	public static String getProjectUrl(String projectName) {
+		return "https://issues.apache.org/jira/rest/api/2/project/" + projectName;
+	}
 
+	// Get JSON API for closed bugs w/ AV in the project (senza startAt e maxResults, aggiunti per ogni pagina)
+	public static String getFixedBugsSearchUrl(String projectName) {
+
+		return JIRA_SEARCH_URL + "project=%22" + projectName
+				+ "%22AND%22issueType%22=%22Bug%22AND(%22status%22=%22closed%22OR"
+				+ "%22status%22=%22resolved%22)AND%22resolution%22=%22fixed%22&fields=key,versions,resolutiondate,created,fixVersions";
+	}
+
+	// Prendo l'ID del ticket, splittandolo dalla chiave che riporta "NOME-#intero"
+	private static int getTicketID(JSONObject issue) throws JSONException {
+		return Integer.parseInt(issue.get("key").toString().split("-")[1]);
+	}
+
+	// Il ticket è ancora un bug chiuso o risolto con resolution fixed, come richiesto dalla ricerca completa
+	private static boolean isFixedBug(JSONObject issue) throws JSONException {
+
+		JSONObject fields = issue.getJSONObject("fields");
+		JSONObject status = fields.optJSONObject("status");
+		JSONObject resolution = fields.optJSONObject("resolution");
+
+		return status != null && resolution != null
+				&& ("closed".equalsIgnoreCase(status.optString("name")) || "resolved".equalsIgnoreCase(status.optString("name")))
+				&& "fixed".equalsIgnoreCase(resolution.optString("name"));
+	}
+
+	private static TicketStore.Ticket getFixedBugTicket(JSONObject issue) throws JSONException {
+
+		JSONObject singleJsonObject = (JSONObject) issue.get("fields");
+		
+		// Il JSONArray associato alle Affected Version
+		JSONArray affectedVersionArray = singleJsonObject.getJSONArray("versions");
+		
+		// Estraggo una lista Java dal JSONArray per prendermi la lista delle affected versions, anche quelle
+		// non ancora rilasciate
+		List<String> affectedVersionList = jiraLogic.getJsonAVList(affectedVersionArray);
+
+		//Lo split viene eseguito sulla "T" e viene preso il primo elemento perché è la data, dopo ci sarebbe l'ora,
+		// che ignoro perché inutile per i nostri calcoli.
+		return new TicketStore.Ticket(getTicketID(issue), singleJsonObject.getString("resolutiondate").split("T")[0],
+				singleJsonObject.getString("created").split("T")[0], affectedVersionList);
 	}	
 	
 }
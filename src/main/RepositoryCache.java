@@ -0,0 +1,158 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.TagOpt;
+
+// Cache delle repository dei progetti: una copia bare per progetto in una cartella che resta tra un run e
+// l'altro. Al primo utilizzo la copia viene scaricata, ai successivi viene solo aggiornata con un fetch.
+// Se per un progetto è indicato un percorso locale (-Drepository.NOMEPROGETTO=...) uso direttamente
+// quella repository, senza accedere alla rete.
+public class RepositoryCache {
+
+	// Branch e tag, come in un normale clone: le altre ref (es. refs/pull/* di GitHub) non servono
+	private static final String BRANCHES_REFSPEC = "+refs/heads/*:refs/heads/*";
+	private static final String LOCAL_PATH_PROPERTY = "repository.";
+
+	private final Path cacheDirectory;
+	private final boolean offline;
+
+	// offline = true usa le copie già presenti nella cache senza aggiornarle
+	public RepositoryCache(Path cacheDirectory, boolean offline) {
+
+		this.cacheDirectory = cacheDirectory;
+		this.offline = offline;
+	}
+
+	// Ritorna la repository del progetto, da chiudere a fine utilizzo
+	public Repository open(String projectName, String remoteUri) throws IOException, GitAPIException {
+
+		// Niente lambda: openRepository lancia due tipi di eccezione, che la lambda ridurrebbe ad Exception
+		RunMetrics.Timer timer = RunMetrics.time("clone");
+		try {
+			return openRepository(projectName, remoteUri);
+		} finally {
+			timer.close();
+		}
+	}
+
+	private Repository openRepository(String projectName, String remoteUri) throws IOException, GitAPIException {
+
+		String localPath = System.getProperty(LOCAL_PATH_PROPERTY + projectName);
+		if (localPath != null) {
+			LoggerClass.infoLog("Uso la repository locale di {}: {}", projectName, localPath);
+			return Git.open(new File(localPath)).getRepository();
+		}
+
+		Path mirror = cacheDirectory.resolve(projectName + ".git");
+
+		if (!Files.isDirectory(mirror)) {
+			if (offline) {
+				throw new IOException("Nessuna copia di " + projectName + " nella cache " + cacheDirectory + " e modalità offline attiva");
+			}
+			LoggerClass.infoLog("Scarico la repository di {} nella cache: {}", projectName, mirror);
+			download(mirror, remoteUri);
+		} else if (!offline) {
+			LoggerClass.infoLog("Aggiorno la copia in cache di {}: {}", projectName, mirror);
+			try (Git git = Git.open(mirror.toFile())) {
+				update(git, remoteUri);
+			}
+		}
+
+		Repository repository = Git.open(mirror.toFile()).getRepository();
+		if (offline && repository.getRefDatabase().getRefs().isEmpty()) {
+			repository.close();
+			throw new IOException("La copia di " + projectName + " nella cache " + mirror + " è vuota e modalità offline attiva");
+		}
+		return repository;
+	}
+
+	// Scarico la copia in una cartella temporanea accanto a quella finale e la sposto solo a fetch completato,
+	// così un download fallito o interrotto non lascia nella cache una repository vuota
+	private void download(Path mirror, String remoteUri) throws IOException, GitAPIException {
+
+		Path temporaryMirror = mirror.resolveSibling(mirror.getFileName() + ".tmp");
+		deleteDirectory(temporaryMirror);
+		Files.createDirectories(temporaryMirror);
+
+		try (Git git = Git.init().setBare(true).setDirectory(temporaryMirror.toFile()).call()) {
+			update(git, remoteUri);
+		} catch (IOException | GitAPIException | RuntimeException e) {
+			try {
+				deleteDirectory(temporaryMirror);
+			} catch (IOException deleteError) {
+				e.addSuppressed(deleteError);
+			}
+			throw e;
+		}
+		Files.move(temporaryMirror, mirror, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	// Fetch di branch e tag dal remoto, eliminando le ref cancellate, e HEAD allineato al branch di default
+	private void update(Git git, String remoteUri) throws IOException, GitAPIException {
+
+		FetchResult fetchResult = git.fetch().setRemote(remoteUri).setRefSpecs(BRANCHES_REFSPEC)
+				.setTagOpt(TagOpt.FETCH_TAGS).setRemoveDeletedRefs(true).call();
+
+		String defaultBranch = findDefaultBranch(fetchResult);
+		if (defaultBranch != null) {
+			git.getRepository().updateRef(Constants.HEAD).link(defaultBranch);
+		}
+	}
+
+	// Cerca il branch puntato da HEAD sul remoto: se il server non lo dice esplicitamente, prendo il branch
+	// che punta allo stesso commit, preferendo master
+	private static String findDefaultBranch(FetchResult fetchResult) {
+
+		Ref remoteHead = fetchResult.getAdvertisedRef(Constants.HEAD);
+		if (remoteHead == null) {
+			return null;
+		}
+		if (remoteHead.isSymbolic()) {
+			return remoteHead.getTarget().getName();
+		}
+
+		String defaultBranch = null;
+		for (Ref ref : fetchResult.getAdvertisedRefs()) {
+			if (ref.getName().startsWith(Constants.R_HEADS) && remoteHead.getObjectId().equals(ref.getObjectId())
+					&& (defaultBranch == null || ref.getName().equals(Constants.R_HEADS + Constants.MASTER))) {
+				defaultBranch = ref.getName();
+			}
+		}
+		return defaultBranch;
+	}
+
+	private static void deleteDirectory(Path directory) throws IOException {
+
+		if (!Files.exists(directory)) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	// Cache nella cartella indicata con -DrepositoryCache (default "repositories"), -DrepositoryOffline=true
+	// per non aggiornare le copie presenti
+	public static RepositoryCache fromSystemProperties() {
+
+		return new RepositoryCache(Paths.get(System.getProperty("repositoryCache", "repositories")),
+				Boolean.getBoolean("repositoryOffline"));
+	}
+
+}
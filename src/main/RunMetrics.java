@@ -0,0 +1,210 @@
+package main;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Metriche di un run: durata di ogni fase (version_fetch, jira_search, clone, file_universe, commit_walk, diff,
+// labeling, csv_write, arff_build, train, evaluate, ...), contatori (commit, diff, edit, ticket, righe, istanze)
+// e picco della heap usata. A fine run vengono scritte in -DmetricsFile (default "run-metrics.json"): in JSON,
+// oppure nel formato testuale di Prometheus se il nome del file finisce con ".prom", così run diversi
+// possono essere confrontati.
+// Le fasi eseguite da più thread insieme (diff, train, evaluate) sommano il tempo di tutti i thread.
+public class RunMetrics {
+
+	private static final Path METRICS_FILE = Paths.get(System.getProperty("metricsFile", "run-metrics.json"));
+	private static final String PROMETHEUS_EXTENSION = ".prom";
+	private static final String PROMETHEUS_PREFIX = "isw2_";
+
+	// Intervallo di campionamento della heap, impostabile con -DmetricsHeapSampleMillis (0 = solo a fine fase)
+	private static final long HEAP_SAMPLE_MILLIS = Long.getLong("metricsHeapSampleMillis", 100);
+
+	private static final Map<String, StageStats> STAGES = new ConcurrentHashMap<>();
+	private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+	private static final AtomicLong HEAP_HIGH_WATER = new AtomicLong();
+	private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+	static {
+		if (HEAP_SAMPLE_MILLIS > 0) {
+			Thread heapSampler = new Thread(RunMetrics::sampleHeapPeriodically, "metrics-heap-sampler");
+			heapSampler.setDaemon(true);
+			heapSampler.start();
+		}
+	}
+
+	// Durata totale, numero di esecuzioni e durata massima di una fase
+	private static class StageStats {
+
+		private final LongAdder nanos = new LongAdder();
+		private final LongAdder calls = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		void add(long elapsed) {
+
+			nanos.add(elapsed);
+			calls.increment();
+			maxNanos.accumulateAndGet(elapsed, Math::max);
+		}
+	}
+
+	// Misura una fase dall'apertura alla chiusura, da usare con try-with-resources
+	public static final class Timer implements AutoCloseable {
+
+		private final StageStats stats;
+		private final long start = System.nanoTime();
+
+		private Timer(StageStats stats) {
+			this.stats = stats;
+		}
+
+		@Override
+		public void close() {
+
+			stats.add(System.nanoTime() - start);
+			sampleHeap();
+		}
+	}
+
+	// Corpo di una fase misurata con time(stage, body), con o senza risultato
+	public interface Stage<T, E extends Exception> {
+		T run() throws E;
+	}
+
+	public interface VoidStage<E extends Exception> {
+		void run() throws E;
+	}
+
+	private RunMetrics() {
+		throw new IllegalStateException("This should not be called!");
+	}
+
+	public static Timer time(String stage) {
+		return new Timer(STAGES.computeIfAbsent(stage, name -> new StageStats()));
+	}
+
+	// Esegue il corpo misurandolo come la fase indicata e ne ritorna il risultato
+	public static <T, E extends Exception> T time(String stage, Stage<T, E> body) throws E {
+
+		Timer timer = time(stage);
+		try {
+			return body.run();
+		} finally {
+			timer.close();
+		}
+	}
+
+	public static <E extends Exception> void time(String stage, VoidStage<E> body) throws E {
+
+		Timer timer = time(stage);
+		try {
+			body.run();
+		} finally {
+			timer.close();
+		}
+	}
+
+	public static void count(String counter, long amount) {
+		COUNTERS.computeIfAbsent(counter, name -> new LongAdder()).add(amount);
+	}
+
+	public static void sampleHeap() {
+		HEAP_HIGH_WATER.accumulateAndGet(MEMORY.getHeapMemoryUsage().getUsed(), Math::max);
+	}
+
+	private static void sampleHeapPeriodically() {
+
+		while (!Thread.currentThread().isInterrupted()) {
+			sampleHeap();
+			try {
+				Thread.sleep(HEAP_SAMPLE_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// Scrive le metriche raccolte finora nel file del run. Un errore di scrittura non blocca il programma,
+	// che ha già finito il suo lavoro.
+	public static void write() {
+
+		sampleHeap();
+		try {
+			if (METRICS_FILE.getParent() != null) {
+				Files.createDirectories(METRICS_FILE.getParent());
+			}
+			try (Writer writer = Files.newBufferedWriter(METRICS_FILE, StandardCharsets.UTF_8)) {
+				if (METRICS_FILE.getFileName().toString().endsWith(PROMETHEUS_EXTENSION)) {
+					writePrometheus(writer);
+				} else {
+					writeJson(writer);
+				}
+			}
+			LoggerClass.infoLog("Metriche del run scritte in {}", METRICS_FILE);
+		} catch (IOException e) {
+			LoggerClass.errorLog("Impossibile scrivere le metriche del run in {}: {}", METRICS_FILE, e.getMessage());
+		}
+	}
+
+	// Fasi e contatori in ordine di nome, così i file di run diversi si confrontano riga per riga
+	private static void writeJson(Writer writer) throws IOException {
+
+		writer.write("{\n  \"timestamp\": \"" + Instant.now() + "\",\n  \"heapHighWaterBytes\": " + HEAP_HIGH_WATER.get()
+				+ ",\n  \"stages\": {");
+		String separator = "\n";
+		for (Map.Entry<String, StageStats> stage : new TreeMap<>(STAGES).entrySet()) {
+			StageStats stats = stage.getValue();
+			writer.write(separator + "    \"" + stage.getKey() + "\": { \"calls\": " + stats.calls.sum() + ", \"seconds\": "
+					+ toSeconds(stats.nanos.sum()) + ", \"maxSeconds\": " + toSeconds(stats.maxNanos.get()) + " }");
+			separator = ",\n";
+		}
+		writer.write("\n  },\n  \"counters\": {");
+		separator = "\n";
+		for (Map.Entry<String, LongAdder> counter : new TreeMap<>(COUNTERS).entrySet()) {
+			writer.write(separator + "    \"" + counter.getKey() + "\": " + counter.getValue().sum());
+			separator = ",\n";
+		}
+		writer.write("\n  }\n}\n");
+	}
+
+	private static void writePrometheus(Writer writer) throws IOException {
+
+		writer.write("# TYPE " + PROMETHEUS_PREFIX + "stage_seconds_total counter\n");
+		for (Map.Entry<String, StageStats> stage : new TreeMap<>(STAGES).entrySet()) {
+			writer.write(PROMETHEUS_PREFIX + "stage_seconds_total{stage=\"" + stage.getKey() + "\"} "
+					+ toSeconds(stage.getValue().nanos.sum()) + "\n");
+		}
+		writer.write("# TYPE " + PROMETHEUS_PREFIX + "stage_calls_total counter\n");
+		for (Map.Entry<String, StageStats> stage : new TreeMap<>(STAGES).entrySet()) {
+			writer.write(PROMETHEUS_PREFIX + "stage_calls_total{stage=\"" + stage.getKey() + "\"} "
+					+ stage.getValue().calls.sum() + "\n");
+		}
+		writer.write("# TYPE " + PROMETHEUS_PREFIX + "stage_max_seconds gauge\n");
+		for (Map.Entry<String, StageStats> stage : new TreeMap<>(STAGES).entrySet()) {
+			writer.write(PROMETHEUS_PREFIX + "stage_max_seconds{stage=\"" + stage.getKey() + "\"} "
+					+ toSeconds(stage.getValue().maxNanos.get()) + "\n");
+		}
+		for (Map.Entry<String, LongAdder> counter : new TreeMap<>(COUNTERS).entrySet()) {
+			String name = PROMETHEUS_PREFIX + counter.getKey() + "_total";
+			writer.write("# TYPE " + name + " counter\n" + name + " " + counter.getValue().sum() + "\n");
+		}
+		writer.write("# TYPE " + PROMETHEUS_PREFIX + "heap_high_water_bytes gauge\n" + PROMETHEUS_PREFIX
+				+ "heap_high_water_bytes " + HEAP_HIGH_WATER.get() + "\n");
+	}
+
+	private static String toSeconds(long nanos) {
+		return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+	}
+
+}
@@ -0,0 +1,169 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Copia locale dei ticket di Jira (bug chiusi o risolti con resolution fixed) di un progetto, con la data
+// dell'ultima sincronizzazione. I run successivi chiedono a Jira solo i ticket aggiornati da quella data
+// e li uniscono a quelli già presenti.
+public class TicketStore {
+
+	private static final int MAGIC = 0x5449434B;
+	private static final int FORMAT_VERSION = 2;
+
+	// Campi di un ticket che servono a JiraLogic, con le date già nel formato yyyy-MM-dd. Le Affected Version
+	// sono tutte quelle del ticket, anche non rilasciate: vengono filtrate con le release di ogni run.
+	public static class Ticket {
+
+		private final int ticketID;
+		private final String resolutionDate;
+		private final String creationDate;
+		private final List<String> affectedVersions;
+
+		public Ticket(int ticketID, String resolutionDate, String creationDate, List<String> affectedVersions) {
+
+			this.ticketID = ticketID;
+			this.resolutionDate = resolutionDate;
+			this.creationDate = creationDate;
+			this.affectedVersions = Collections.unmodifiableList(new ArrayList<>(affectedVersions));
+		}
+
+		public int getTicketID() {
+			return ticketID;
+		}
+
+		public String getResolutionDate() {
+			return resolutionDate;
+		}
+
+		public String getCreationDate() {
+			return creationDate;
+		}
+
+		public List<String> getAffectedVersions() {
+			return affectedVersions;
+		}
+	}
+
+	// Map<ID del ticket, ticket>: un ticket aggiornato resta nella posizione in cui era stato letto la prima volta
+	private final Map<Integer, Ticket> tickets = new LinkedHashMap<>();
+
+	// Inizio dell'ultima sincronizzazione in millisecondi, -1 se il progetto non è mai stato sincronizzato
+	private long lastSync = -1;
+
+	// Ticket aggiunti, aggiornati o rimossi nel run corrente
+	private int changedTickets;
+
+	public void put(Ticket ticket) {
+
+		tickets.put(ticket.getTicketID(), ticket);
+		changedTickets++;
+	}
+
+	public void remove(int ticketID) {
+
+		if (tickets.remove(ticketID) != null) {
+			changedTickets++;
+		}
+	}
+
+	public Collection<Ticket> getTickets() {
+		return Collections.unmodifiableCollection(tickets.values());
+	}
+
+	public int size() {
+		return tickets.size();
+	}
+
+	public int getChangedTickets() {
+		return changedTickets;
+	}
+
+	public long getLastSync() {
+		return lastSync;
+	}
+
+	public void setLastSync(long lastSync) {
+		this.lastSync = lastSync;
+	}
+
+	// Carica i ticket dal file, o ritorna uno store vuoto se il file non esiste
+	public static TicketStore load(Path storeFile) throws IOException {
+
+		TicketStore store = new TicketStore();
+		if (!Files.exists(storeFile)) {
+			return store;
+		}
+
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(Files.newInputStream(storeFile))))) {
+
+			if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+				LoggerClass.infoLog("Formato dei ticket salvati non riconosciuto, riparto da zero: {}", storeFile);
+				return store;
+			}
+
+			store.lastSync = input.readLong();
+			int count = input.readInt();
+
+			for (int i = 0; i < count; i++) {
+				int ticketID = input.readInt();
+				String resolutionDate = input.readUTF();
+				String creationDate = input.readUTF();
+				int versions = input.readInt();
+
+				List<String> affectedVersions = new ArrayList<>(versions);
+				for (int j = 0; j < versions; j++) {
+					affectedVersions.add(input.readUTF());
+				}
+				store.tickets.put(ticketID, new Ticket(ticketID, resolutionDate, creationDate, affectedVersions));
+			}
+		}
+		return store;
+	}
+
+	// Salva i ticket, scrivendo prima su un file temporaneo per non lasciarne uno a metà se il run si interrompe
+	public void save(Path storeFile) throws IOException {
+
+		if (storeFile.getParent() != null) {
+			Files.createDirectories(storeFile.getParent());
+		}
+		Path temporaryFile = storeFile.resolveSibling(storeFile.getFileName() + ".tmp");
+
+		try (DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temporaryFile))))) {
+
+			output.writeInt(MAGIC);
+			output.writeInt(FORMAT_VERSION);
+			output.writeLong(lastSync);
+			output.writeInt(tickets.size());
+
+			for (Ticket ticket : tickets.values()) {
+				output.writeInt(ticket.getTicketID());
+				output.writeUTF(ticket.getResolutionDate());
+				output.writeUTF(ticket.getCreationDate());
+				output.writeInt(ticket.getAffectedVersions().size());
+
+				for (String affectedVersion : ticket.getAffectedVersions()) {
+					output.writeUTF(affectedVersion);
+				}
+			}
+		}
+		Files.move(temporaryFile, storeFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+}